@@ -0,0 +1,117 @@
+package com.arhan.integration;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Catch-up of a 10k-notification backlog in each execution mode: format, queue and deliver to a
+// stub webhook that takes discordMillis per post. The time per backlog is the throughput; after
+// each iteration the peak platform thread count and the p50/p99 time from the start of the
+// catch-up to the stub receiving a message are printed. "virtual" (sequential senders posting
+// with java.net.http) needs -Pjava21 on Java 21
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExecutionModeBenchmark {
+    private static final int BACKLOG = 10_000;
+    private static final Pattern SEQ = Pattern.compile("seq (\\d+)");
+
+    @Param({"reactive", "virtual"})
+    public String mode;
+
+    @Param({"5"})
+    public int discordMillis;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final long[] receivedAt = new long[BACKLOG];
+    private final AtomicInteger received = new AtomicInteger();
+    private List<Notification> backlog;
+    private DisposableServer stub;
+    private Execution execution;
+    private BlockingHttp http;
+    private Path dir;
+    private NotificationPipeline pipeline;
+    private volatile long start;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        backlog = NotificationPipelineTest.backlog(BACKLOG, 500);
+        execution = Execution.of(mode);
+        // One java.net.http client for every iteration, like the app's bean
+        http = BlockingHttp.create(new Config.HttpSettings(5000, 30, 30, 50, 10000, 30, 300, 30, 16 * 1024 * 1024, false),
+                execution.executor());
+        dir = Files.createTempDirectory("execution-bench");
+        stub = HttpServer.create().port(0)
+                .route(r -> r.post("/hook", (req, res) -> req.receive().aggregate().asString(StandardCharsets.UTF_8)
+                        .delayElement(Duration.ofMillis(discordMillis))
+                        .flatMap(body -> {
+                            long now = System.nanoTime();
+                            Matcher m = SEQ.matcher(body);
+                            while (m.find()) {
+                                receivedAt[Integer.parseInt(m.group(1))] = now;
+                                received.incrementAndGet();
+                            }
+                            return res.status(204).send().then();
+                        })))
+                .bindNow();
+    }
+
+    @Setup(Level.Iteration)
+    public void freshQueue() throws IOException {
+        DiscordClient discord = new DiscordClient(WebClient.create(), http, "http://localhost:" + stub.port() + "/hook");
+        pipeline = new NotificationPipeline(new WebhookSender(discord, 3, Duration.ofMillis(10)),
+                "https://team.youtrack.cloud/api", 0, 20,
+                new OutboundQueue(Files.createTempDirectory(dir, "outbox"), 4, 8 << 20), execution);
+        Arrays.fill(receivedAt, 0);
+        received.set(0);
+        threads.resetPeakThreadCount();
+    }
+
+    @Benchmark
+    public int drainBacklog() throws Exception {
+        start = System.nanoTime();
+        pipeline.enqueue(pipeline.render(backlog).collectList().block());
+        while (pipeline.pending() > 0) Thread.sleep(1);
+        return received.get();
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() throws IOException {
+        pipeline.close();
+        long[] millis = Arrays.stream(receivedAt).filter(t -> t > 0).map(t -> (t - start) / 1_000_000).sorted().toArray();
+        System.out.printf("%n%s: %d delivered, peak threads %d, p50 %d ms, p99 %d ms%n", mode, received.get(),
+                threads.getPeakThreadCount(), percentile(millis, 0.50), percentile(millis, 0.99));
+    }
+
+    private static long percentile(long[] sorted, double q) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.ceil(q * sorted.length) - 1)];
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        stub.disposeNow();
+        execution.close();
+        try (var files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
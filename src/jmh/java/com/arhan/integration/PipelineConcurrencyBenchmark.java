@@ -0,0 +1,72 @@
+package com.arhan.integration;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Catch-up of a 5k-notification backlog by pipeline.concurrency (decode + format in parallel, then
+// queued and delivered to a stub webhook that answers right away). The time per backlog should
+// drop as concurrency goes up to the core count; 0 is the default (one per core)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PipelineConcurrencyBenchmark {
+    private static final int BACKLOG = 5_000;
+
+    @Param({"1", "2", "4", "0"})
+    public int concurrency;
+
+    private List<Notification> backlog;
+    private DisposableServer stub;
+    private Path dir;
+    private NotificationPipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        backlog = NotificationPipelineTest.backlog(BACKLOG, 200);
+        dir = Files.createTempDirectory("concurrency-bench");
+        stub = HttpServer.create().port(0)
+                .route(r -> r.post("/hook", (req, res) -> req.receive().then(res.status(204).send())))
+                .bindNow();
+    }
+
+    @Setup(Level.Iteration)
+    public void freshQueue() throws IOException {
+        DiscordClient discord = new DiscordClient(WebClient.create(), "http://localhost:" + stub.port() + "/hook");
+        pipeline = new NotificationPipeline(new WebhookSender(discord, 3, Duration.ofMillis(10)),
+                "https://team.youtrack.cloud/api", concurrency, 20,
+                new OutboundQueue(Files.createTempDirectory(dir, "outbox"), 4, 8 << 20));
+    }
+
+    @Benchmark
+    public int catchUp() throws Exception {
+        pipeline.enqueue(pipeline.render(backlog).collectList().block());
+        while (pipeline.pending() > 0) Thread.sleep(1);
+        return BACKLOG;
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeQueue() throws IOException {
+        pipeline.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        stub.disposeNow();
+        try (var files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.arhan.integration;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+// Startup load, per-tick persistence and lookup cost of SeenStore holding liveIds ids (the window
+// still at or above the watermark, up to seen.maxIds) after historicalIds delivered in total.
+// Per-op costs should stay flat as historicalIds grows, since eviction + compaction bound the
+// log; liveIds shows what a full index costs
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class SeenStoreBenchmark {
+    private static final int TICK = 50; // notifications delivered per poll
+
+    @Param({"100000", "1000000"})
+    public int liveIds;
+
+    @Param({"3000000"})
+    public int historicalIds;
+
+    private Path dir;
+    private Path log;
+    private SeenStore store;
+    private long next;
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void history() throws IOException {
+        dir = Files.createTempDirectory("seen-bench");
+        log = dir.resolve("seen.log");
+        try (SeenStore s = new SeenStore(log, liveIds)) {
+            for (next = 0; next < historicalIds; next++) {
+                s.add("2-" + next, next);
+                if (next % TICK == TICK - 1) {
+                    s.evictBefore(next - liveIds + TICK);
+                    s.flush();
+                }
+            }
+        }
+        store = new SeenStore(log, liveIds);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        store.close();
+        try (var files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int startupLoad() throws IOException {
+        try (SeenStore s = new SeenStore(log, liveIds)) {
+            return s.size();
+        }
+    }
+
+    @Benchmark
+    public void tickPersist() throws IOException {
+        for (int i = 0; i < TICK; i++, next++) store.add("2-" + next, next);
+        store.evictBefore(next - liveIds + TICK);
+        store.flush();
+    }
+
+    // Half hits in the live window, half misses below it
+    @Benchmark
+    public boolean lookup() {
+        probe++;
+        long id = (probe & 1) == 0 ? next - 1 - (probe * 31L) % (liveIds / 2) : probe % (historicalIds / 2);
+        return store.contains("2-" + id);
+    }
+}
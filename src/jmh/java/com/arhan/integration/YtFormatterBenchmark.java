@@ -0,0 +1,48 @@
+package com.arhan.integration;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Original JsonNode/template formatter vs the streaming parse + compiled renderer, on the golden samples.
+// Run with -prof gc to get allocated bytes per op (gc.alloc.rate.norm)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YtFormatterBenchmark {
+    private static final String BASE = "https://team.youtrack.cloud";
+
+    @Param({"small", "comment-heavy", "saved-search-heavy"})
+    public String sample;
+
+    private String json;
+    private YtMetadata parsed;
+
+    @Setup
+    public void load() throws Exception {
+        try (InputStream in = getClass().getResourceAsStream("/golden/" + sample + ".json")) {
+            json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        parsed = YtMetadata.parse(json);
+    }
+
+    @Benchmark
+    public String legacy() throws Exception {
+        return LegacyYtFormatter.fromMetadata(json, BASE);
+    }
+
+    @Benchmark
+    public String compiled() throws Exception {
+        return YtFormatter.fromMetadata(json, BASE);
+    }
+
+    @Benchmark
+    public String compiledRenderOnly() {
+        return YtFormatter.render(parsed, BASE, null);
+    }
+}
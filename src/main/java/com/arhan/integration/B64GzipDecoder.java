@@ -0,0 +1,253 @@
+package com.arhan.integration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Decodes the base64 + gzip payloads YouTrack puts in notification metadata/content.
+// Base64 is decoded in small chunks straight into a pooled Inflater (instead of a new
+// GZIPInputStream and native Inflater per call), output goes into a reusable per-thread buffer
+// capped at maxBytes (gzip bombs), and failures are counted instead of silently returning ""
+public final class B64GzipDecoder {
+
+    public enum Failure { BASE64, GZIP, TOO_LARGE }
+
+    // Receives the decoded bytes; the buffer is only valid for the duration of the call
+    @FunctionalInterface
+    public interface Sink<T> {
+        T accept(byte[] buf, int off, int len) throws IOException;
+    }
+
+    private static final int CHUNK = 8 * 1024;
+    private static final int MAX_RETAINED_OUTPUT = 64 * 1024;
+    private static final byte[] DECODE = new byte[128];
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) DECODE[alphabet.charAt(i)] = (byte) i;
+    }
+
+    private final int maxBytes;
+    private final int poolSize;
+    private final ConcurrentLinkedQueue<Inflater> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final AtomicLong inflatersCreated = new AtomicLong();
+    private final Map<Failure, AtomicLong> failures = new EnumMap<>(Failure.class);
+    private final ThreadLocal<byte[]> input = ThreadLocal.withInitial(() -> new byte[CHUNK]);
+    private final ThreadLocal<byte[]> output = ThreadLocal.withInitial(() -> new byte[CHUNK]);
+
+    public B64GzipDecoder(int maxBytes, int poolSize) {
+        this.maxBytes = maxBytes;
+        this.poolSize = poolSize;
+        for (Failure f : Failure.values()) failures.put(f, new AtomicLong());
+    }
+
+    public long failures(Failure kind) { return failures.get(kind).get(); }
+
+    public long inflatersCreated() { return inflatersCreated.get(); }
+
+    // "" for missing or undecodable input, like the old decodeB64Gzip
+    public String decodeToString(byte[] b64) {
+        try {
+            String s = decode(b64, (buf, off, len) -> new String(buf, off, len, StandardCharsets.UTF_8));
+            return s == null ? "" : s;
+        } catch (IOException e) { return ""; }
+    }
+
+    // Hands the decompressed bytes to sink and returns its result, or null when the input is
+    // missing or can't be decoded (counted under failures()). Exceptions from sink propagate
+    public <T> T decode(byte[] b64, Sink<T> sink) throws IOException {
+        if (b64 == null || b64.length == 0) return null;
+        Inflater inflater = borrow();
+        byte[] out = output.get();
+        try {
+            Base64Reader in = new Base64Reader(b64);
+            int len;
+            try {
+                out = inflate(in, inflater, out);
+                len = (int) inflater.getBytesWritten();
+            } catch (Base64Exception e) {
+                failures.get(Failure.BASE64).incrementAndGet();
+                return null;
+            } catch (TooLargeException e) {
+                failures.get(Failure.TOO_LARGE).incrementAndGet();
+                return null;
+            } catch (IOException | DataFormatException e) {
+                failures.get(Failure.GZIP).incrementAndGet();
+                return null;
+            }
+            return sink.accept(out, 0, len);
+        } finally {
+            release(inflater);
+            output.set(out.length <= MAX_RETAINED_OUTPUT ? out : new byte[CHUNK]);
+        }
+    }
+
+    // Gzip member: header, raw deflate stream, CRC32 + size trailer (RFC 1952)
+    private byte[] inflate(Base64Reader in, Inflater inflater, byte[] out) throws IOException, DataFormatException {
+        readHeader(in);
+        byte[] chunk = input.get();
+        int written = 0;
+        while (!inflater.finished()) {
+            if (inflater.needsInput()) {
+                int n = in.read(chunk, 0, chunk.length);
+                if (n <= 0) throw new IOException("Truncated gzip data");
+                inflater.setInput(chunk, 0, n);
+            }
+            if (written == out.length && out.length < maxBytes) {
+                out = Arrays.copyOf(out, (int) Math.min((long) out.length * 2, maxBytes));
+            }
+            int room = Math.min(out.length, maxBytes) - written;
+            int n;
+            if (room > 0) n = inflater.inflate(out, written, room);
+            // Holding maxBytes already: too large only if the stream has more output, not just its end left to read
+            else if (inflater.inflate(new byte[1], 0, 1) > 0) throw new TooLargeException();
+            else n = 0;
+            if (n == 0 && inflater.needsDictionary()) throw new DataFormatException("Preset dictionary not supported");
+            written += n;
+        }
+
+        // Trailer starts in whatever the inflater didn't consume from the last chunk
+        byte[] trailer = new byte[8];
+        int fromChunk = Math.min(inflater.getRemaining(), 8);
+        int lastChunkEnd = in.lastReadEnd();
+        System.arraycopy(chunk, lastChunkEnd - inflater.getRemaining(), trailer, 0, fromChunk);
+        if (fromChunk < 8 && in.read(trailer, fromChunk, 8 - fromChunk) != 8 - fromChunk)
+            throw new IOException("Truncated gzip trailer");
+        CRC32 crc = new CRC32();
+        crc.update(out, 0, written);
+        if ((int) crc.getValue() != le32(trailer, 0) || written != le32(trailer, 4))
+            throw new IOException("Corrupt gzip trailer");
+        return out;
+    }
+
+    private static void readHeader(Base64Reader in) throws IOException {
+        if (in.readByte() != 0x1f || in.readByte() != 0x8b) throw new IOException("Not in gzip format");
+        if (in.readByte() != 8) throw new IOException("Unsupported compression method");
+        int flags = in.readByte();
+        for (int i = 0; i < 6; i++) in.readByte(); // mtime, xfl, os
+        if ((flags & 4) != 0) { // FEXTRA
+            int xlen = in.readByte() | (in.readByte() << 8);
+            for (int i = 0; i < xlen; i++) in.readByte();
+        }
+        if ((flags & 8) != 0) while (in.readByte() != 0) { } // FNAME
+        if ((flags & 16) != 0) while (in.readByte() != 0) { } // FCOMMENT
+        if ((flags & 2) != 0) { in.readByte(); in.readByte(); } // FHCRC
+    }
+
+    private static int le32(byte[] b, int off) {
+        return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+    }
+
+    private Inflater borrow() {
+        Inflater inf = pool.poll();
+        if (inf != null) {
+            pooled.decrementAndGet();
+            return inf;
+        }
+        inflatersCreated.incrementAndGet();
+        return new Inflater(true);
+    }
+
+    private void release(Inflater inf) {
+        inf.reset();
+        if (pooled.incrementAndGet() <= poolSize) pool.offer(inf);
+        else {
+            pooled.decrementAndGet();
+            inf.end();
+        }
+    }
+
+    // Decodes standard base64 (padding optional, like Base64.getDecoder()) a few bytes at a time
+    private static final class Base64Reader {
+        private final byte[] src;
+        private int pos;
+        private final byte[] pending = new byte[3];
+        private int pendingPos, pendingLen;
+        private boolean ended;
+        private int lastReadEnd;
+
+        Base64Reader(byte[] src) { this.src = src; }
+
+        // off + length of the last read(), so the caller can find bytes the inflater left over
+        int lastReadEnd() { return lastReadEnd; }
+
+        int readByte() throws IOException {
+            if (pendingPos == pendingLen && !fill()) throw new IOException("Unexpected end of data");
+            return pending[pendingPos++] & 0xff;
+        }
+
+        int read(byte[] dst, int off, int len) throws IOException {
+            int n = 0;
+            while (n < len && pendingPos < pendingLen) dst[off + n++] = pending[pendingPos++];
+            // Whole quads go straight into dst
+            while (len - n >= 3 && !ended && src.length - pos >= 4) {
+                int q = quad(dst, off + n);
+                if (q < 0) break;
+                n += q;
+            }
+            while (n < len && (pendingPos < pendingLen || fill())) dst[off + n++] = pending[pendingPos++];
+            lastReadEnd = off + n;
+            return n;
+        }
+
+        private boolean fill() throws IOException {
+            if (ended || pos >= src.length) return false;
+            pendingPos = 0;
+            pendingLen = quad(pending, 0);
+            if (pendingLen < 0) { pendingLen = 0; return false; }
+            return pendingLen > 0;
+        }
+
+        // Decodes the next quad into dst[off..], returns the number of bytes (1-3), or -1 at the end
+        private int quad(byte[] dst, int off) throws IOException {
+            if (ended || pos >= src.length) return -1;
+            int bits = 0, n = 0;
+            while (n < 4 && pos < src.length) {
+                int c = src[pos];
+                if (c == '=') { ended = true; break; }
+                int d = c >= 0 && c < 128 ? DECODE[c] : -1;
+                if (d < 0) throw new Base64Exception();
+                bits = bits << 6 | d;
+                n++;
+                pos++;
+            }
+            if (ended) checkPadding(n);
+            if (n == 1) throw new Base64Exception();
+            if (n == 0) return -1;
+            if (n == 2) {
+                dst[off] = (byte) (bits >> 4);
+                return 1;
+            }
+            if (n == 3) {
+                dst[off] = (byte) (bits >> 10);
+                dst[off + 1] = (byte) (bits >> 2);
+                return 2;
+            }
+            dst[off] = (byte) (bits >> 16);
+            dst[off + 1] = (byte) (bits >> 8);
+            dst[off + 2] = (byte) bits;
+            return 3;
+        }
+
+        // "==" after two chars or "=" after three, and nothing after the padding
+        private void checkPadding(int n) throws IOException {
+            int pad = n == 2 ? 2 : n == 3 ? 1 : -1;
+            if (pad < 0 || src.length - pos != pad) throw new Base64Exception();
+            for (int i = pos; i < src.length; i++) if (src[i] != '=') throw new Base64Exception();
+            pos = src.length;
+        }
+    }
+
+    private static final class Base64Exception extends IOException {}
+
+    private static final class TooLargeException extends IOException {}
+}
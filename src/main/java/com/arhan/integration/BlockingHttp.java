@@ -0,0 +1,93 @@
+package com.arhan.integration;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// java.net.http for the sequential loops (execution.mode=virtual): each call parks the thread
+// that makes it until the whole response is in, with a base URL and default headers like the
+// WebClients in Config. The wait goes through the round's Pause, so stopping the loop cancels the
+// exchange, and the timeout (an HttpTimeoutException) covers the body too, where java.net.http's
+// own only covers the headers. Responses are read into memory, one notifications page or webhook
+// answer at a time
+public class BlockingHttp {
+    private final Supplier<HttpClient> client;
+    private final String base;
+    private final String[] headers;
+    private final Duration timeout;
+
+    private BlockingHttp(Supplier<HttpClient> client, String base, String[] headers, Duration timeout) {
+        this.client = client;
+        this.base = base;
+        this.headers = headers;
+        this.timeout = timeout;
+    }
+
+    // One client for everything, built on first use so the reactive mode never starts its
+    // selector thread. executor runs its callbacks (null: java.net.http's own pool)
+    static BlockingHttp create(Config.HttpSettings s, Executor executor) {
+        Supplier<HttpClient> client = new Supplier<>() {
+            private HttpClient built;
+
+            @Override
+            public synchronized HttpClient get() {
+                if (built != null) return built;
+                HttpClient.Builder b = HttpClient.newBuilder()
+                        .connectTimeout(Duration.ofMillis(s.connectTimeoutMillis()))
+                        // HTTP/2 only where Config's WebClients negotiate it too
+                        .version(s.h2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1);
+                if (executor != null) b.executor(executor);
+                return built = b.build();
+            }
+        };
+        return new BlockingHttp(client, "", new String[0], Duration.ofSeconds(s.responseTimeoutSeconds()));
+    }
+
+    // Defaults of the http.* properties, for clients built outside Spring
+    static BlockingHttp defaults() {
+        return create(new Config.HttpSettings(5000, 30, 30, 50, 10000, 30, 300, 30, 16 * 1024 * 1024, false), null);
+    }
+
+    // The same client with a base URL for relative paths and headers for every request (name, value, ...)
+    BlockingHttp withBase(String base, String... headers) {
+        return new BlockingHttp(client, base, headers, timeout);
+    }
+
+    public HttpResponse<byte[]> get(String path, Duration max, Pause pause)
+            throws IOException, InterruptedException {
+        return send(request(path).GET(), HttpResponse.BodyHandlers.ofByteArray(), max, pause);
+    }
+
+    public HttpResponse<String> postJson(String url, byte[] json, Pause pause)
+            throws IOException, InterruptedException {
+        return send(request(url).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json)), HttpResponse.BodyHandlers.ofString(), timeout, pause);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(path.startsWith("http") ? path : base + path));
+        for (int i = 0; i + 1 < headers.length; i += 2) b.header(headers[i], headers[i + 1]);
+        return b;
+    }
+
+    // At most max (and never more than http.responseTimeoutSeconds) for the whole exchange
+    private <T> HttpResponse<T> send(HttpRequest.Builder request, HttpResponse.BodyHandler<T> body, Duration max, Pause pause)
+            throws IOException, InterruptedException {
+        try {
+            return pause.await(client.get().sendAsync(request.build(), body), max.compareTo(timeout) < 0 ? max : timeout);
+        } catch (TimeoutException e) {
+            throw new HttpTimeoutException(e.getMessage());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException(e.getCause());
+        }
+    }
+}
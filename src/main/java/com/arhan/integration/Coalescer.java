@@ -0,0 +1,99 @@
+package com.arhan.integration;
+
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Groups items by key for a short window so a burst for one key (a bulk edit touching one issue)
+// goes out as one message. A key's group is flushed windowMillis after its first item, as soon as
+// it holds maxEvents items, or when maxKeys groups are open and a new key arrives (the group with
+// the earliest deadline goes first), so at most maxKeys * maxEvents items are ever held
+public class Coalescer<T> {
+    private final long windowMillis;
+    private final int maxEvents;
+    private final int maxKeys;
+    private final Scheduler timer;
+    private final Consumer<List<T>> flush;
+
+    // Guarded by this. In the order the groups were opened, which is also the order of their deadlines
+    private final LinkedHashMap<String, Group<T>> groups = new LinkedHashMap<>();
+    // Groups closed early (full, or pushed out by a new key), in the order they closed, waiting for the timer
+    private final Queue<List<T>> closed = new ConcurrentLinkedQueue<>();
+
+    private static final class Group<T> {
+        final List<T> items = new ArrayList<>();
+    }
+
+    // flush is called with each group's items in arrival order, always on the timer (flushAll aside),
+    // so offering never does the flush's blocking work on the caller's thread (an event loop for pushes)
+    public Coalescer(long windowMillis, int maxEvents, int maxKeys, Scheduler timer, Consumer<List<T>> flush) {
+        this.windowMillis = windowMillis;
+        this.maxEvents = Math.max(1, maxEvents);
+        this.maxKeys = Math.max(1, maxKeys);
+        this.timer = timer;
+        this.flush = flush;
+    }
+
+    public void offer(String key, T item) {
+        Group<T> opened = null;
+        boolean full = false;
+        synchronized (this) {
+            Group<T> g = groups.get(key);
+            if (g == null) {
+                if (groups.size() >= maxKeys) {
+                    Iterator<Group<T>> oldest = groups.values().iterator();
+                    closed.add(oldest.next().items);
+                    oldest.remove();
+                    full = true;
+                }
+                g = new Group<>();
+                groups.put(key, g);
+                opened = g;
+            }
+            g.items.add(item);
+            if (g.items.size() >= maxEvents) {
+                groups.remove(key);
+                closed.add(g.items);
+                full = true;
+                opened = null;
+            }
+        }
+        if (full) timer.schedule(this::flushClosed);
+        // New group: flush it at its deadline, unless it was flushed early by then
+        if (opened != null) {
+            Group<T> g = opened;
+            timer.schedule(() -> expire(key, g), windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized int groups() { return groups.size(); }
+
+    // Flushes everything now, on the calling thread (shutdown)
+    public void flushAll() {
+        flushClosed();
+        List<Group<T>> open;
+        synchronized (this) {
+            open = new ArrayList<>(groups.values());
+            groups.clear();
+        }
+        for (Group<T> g : open) flush.accept(g.items);
+    }
+
+    private void flushClosed() {
+        List<T> items;
+        while ((items = closed.poll()) != null) flush.accept(items);
+    }
+
+    private void expire(String key, Group<T> group) {
+        boolean open;
+        synchronized (this) { open = groups.remove(key, group); }
+        if (open) flush.accept(group.items);
+    }
+}
@@ -1,22 +1,132 @@
 package com.arhan.integration;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.handler.timeout.WriteTimeoutHandler;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
 
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Both WebClients share one event loop group and one connection pool (pooled per host), with
+// explicit timeouts so a dead TCP connection fails the request instead of hanging a poll forever
 @Configuration
 public class Config {
+
+    // Timeouts, pool and size limits for the shared HTTP layer (http.* properties)
+    public record HttpSettings(long connectTimeoutMillis, long responseTimeoutSeconds, long readTimeoutSeconds,
+                               int maxConnections, long pendingAcquireMillis, long maxIdleSeconds,
+                               long maxLifeSeconds, long evictSeconds, int maxInMemoryBytes, boolean h2) {}
+
+    @Bean
+    HttpSettings httpSettings(@Value("${http.connectTimeoutMillis:5000}") long connectTimeoutMillis,
+                              @Value("${http.responseTimeoutSeconds:30}") long responseTimeoutSeconds,
+                              @Value("${http.readTimeoutSeconds:30}") long readTimeoutSeconds,
+                              @Value("${http.maxConnections:50}") int maxConnections,
+                              @Value("${http.pendingAcquireMillis:10000}") long pendingAcquireMillis,
+                              @Value("${http.maxIdleSeconds:30}") long maxIdleSeconds,
+                              @Value("${http.maxLifeSeconds:300}") long maxLifeSeconds,
+                              @Value("${http.evictSeconds:30}") long evictSeconds,
+                              @Value("${http.maxInMemoryBytes:16777216}") int maxInMemoryBytes,
+                              @Value("${http.h2:false}") boolean h2) {
+        return new HttpSettings(connectTimeoutMillis, responseTimeoutSeconds, readTimeoutSeconds, maxConnections,
+                pendingAcquireMillis, maxIdleSeconds, maxLifeSeconds, evictSeconds, maxInMemoryBytes, h2);
+    }
+
+    // Registers the app's gauges (IntegrationMetrics) on Boot's registry, once each
+    @Bean
+    MeterBinder integrationGauges() { return IntegrationMetrics::bindTo; }
+
+    // execution.mode: reactive (default) or virtual, which needs Java 21 and a -Pjava21 build
+    @Bean
+    Execution execution(@Value("${execution.mode:reactive}") String mode) { return Execution.of(mode); }
+
+    // java.net.http for the sequential loops (execution.mode=virtual), its callbacks on the mode's threads
     @Bean
-    WebClient http() { return WebClient.builder().build(); }
+    BlockingHttp blockingHttp(HttpSettings s, Execution execution) { return BlockingHttp.create(s, execution.executor()); }
+
+    @Bean(destroyMethod = "dispose")
+    LoopResources httpLoops() { return LoopResources.create("yt-http", LoopResources.DEFAULT_IO_WORKER_COUNT, true); }
+
+    // Idle connections are closed before servers (or middleboxes) silently drop them, and no
+    // connection lives longer than maxLifeSeconds, so DNS changes and half-dead sockets age out.
+    // Pool gauges show up as reactor.netty.connection.provider.* in /actuator/metrics
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider httpPool(HttpSettings s) {
+        return ConnectionProvider.builder("yt-http")
+                .maxConnections(s.maxConnections())
+                .pendingAcquireTimeout(Duration.ofMillis(s.pendingAcquireMillis()))
+                .maxIdleTime(Duration.ofSeconds(s.maxIdleSeconds()))
+                .maxLifeTime(Duration.ofSeconds(s.maxLifeSeconds()))
+                .evictInBackground(Duration.ofSeconds(s.evictSeconds()))
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    WebClient http(HttpSettings s, LoopResources httpLoops, ConnectionProvider httpPool) {
+        // Webhook URLs carry their token in the path, so they all share one uri tag
+        return client(s, httpLoops, httpPool, uri -> "/webhooks").build();
+    }
 
     @Bean WebClient youtrackClient(
+            HttpSettings s, LoopResources httpLoops, ConnectionProvider httpPool,
             @Value("${youtrack.baseUrl}") String base,
             @Value("${youtrack.token}") String token) {
-        return WebClient.builder()
+        return youtrack(s, httpLoops, httpPool, base, token);
+    }
+
+    // Also used for the extra routing.sources
+    static WebClient youtrack(HttpSettings s, LoopResources loops, ConnectionProvider pool, String base, String token) {
+        return client(s, loops, pool, Config::withoutQuery)
                 .baseUrl(base)
                 .defaultHeader("Authorization", "Bearer " + token)
                 .defaultHeader("Accept", "application/json")
                 .build();
     }
+
+    // The blocking client for the same source (the sequential loops)
+    static BlockingHttp youtrack(BlockingHttp http, String base, String token) {
+        return http.withBase(base, "Authorization", "Bearer " + token, "Accept", "application/json",
+                "Accept-Encoding", "gzip");
+    }
+
+    static WebClient.Builder client(HttpSettings s, LoopResources loops, ConnectionProvider pool,
+                                    Function<String, String> uriTag) {
+        HttpClient http = HttpClient.create(pool)
+                .runOn(loops)
+                .compress(true) // Accept-Encoding: gzip, decompressed transparently
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) s.connectTimeoutMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofSeconds(s.responseTimeoutSeconds()))
+                // Also covers a body that stops arriving half way; the handlers only live for the
+                // request, so idle pooled connections aren't timed out by them
+                .doOnRequest((req, conn) -> conn
+                        .addHandlerLast(new ReadTimeoutHandler(s.readTimeoutSeconds(), TimeUnit.SECONDS))
+                        .addHandlerLast(new WriteTimeoutHandler(s.readTimeoutSeconds(), TimeUnit.SECONDS)))
+                .metrics(true, uriTag);
+        // HTTP/2 is negotiated over TLS (ALPN) and falls back to HTTP/1.1
+        if (s.h2()) http = http.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(http))
+                .exchangeStrategies(ExchangeStrategies.builder()
+                        .codecs(c -> c.defaultCodecs().maxInMemorySize(s.maxInMemoryBytes()))
+                        .build());
+    }
+
+    private static String withoutQuery(String uri) {
+        int q = uri.indexOf('?');
+        return q < 0 ? uri : uri.substring(0, q);
+    }
 }
@@ -0,0 +1,162 @@
+package com.arhan.integration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// The Discord webhooks notifications can go to, each with its own Outbox (index-aligned with the
+// Router's destinations), shared by the pipelines of every source
+public class Destinations implements Leadership.Task {
+    private final List<Outbox> outboxes;
+    private final Router router;
+    // Holds a batch while it is appended to several outboxes (null with a single outbox)
+    private final Path journal;
+    private boolean recovered; // guarded by this
+
+    public Destinations(List<Outbox> outboxes, Router router, Path journal) {
+        if (outboxes.size() != router.size()) throw new IllegalArgumentException("one outbox per destination");
+        this.outboxes = List.copyOf(outboxes);
+        this.router = router;
+        this.journal = outboxes.size() > 1 ? journal : null;
+    }
+
+    // Everything to the one outbox
+    static Destinations single(Outbox outbox) {
+        return new Destinations(List.of(outbox), new Router(List.of(outbox.name()), List.of()), null);
+    }
+
+    public BitSet route(String source, YtMetadata meta) { return router.route(source, meta); }
+
+    // Appends each message to the outboxes it is routed to. A batch that goes to more than one is
+    // written to the journal first and the journal is deleted once every append is done, so a
+    // crash in between (after which the message counts as seen, being in one outbox) is repaired
+    // by recover() instead of leaving the message out of the later outboxes
+    public synchronized void enqueue(List<NotificationPipeline.Rendered> items) throws IOException {
+        if (items.isEmpty()) return;
+        if (outboxes.size() == 1) {
+            outboxes.get(0).enqueue(items);
+            return;
+        }
+        List<List<NotificationPipeline.Rendered>> byDestination = new ArrayList<>();
+        for (int d = 0; d < outboxes.size(); d++) byDestination.add(new ArrayList<>());
+        int used = 0;
+        for (NotificationPipeline.Rendered r : items) {
+            BitSet to = r.to() != null ? r.to() : router.route(r.source(), null);
+            for (int d = to.nextSetBit(0); d >= 0; d = to.nextSetBit(d + 1)) {
+                if (byDestination.get(d).isEmpty()) used++;
+                byDestination.get(d).add(r);
+            }
+        }
+        boolean journaled = used > 1 && journal != null;
+        if (journaled) {
+            if (!recovered) recover();
+            writeJournal(byDestination);
+        }
+        for (int d = 0; d < outboxes.size(); d++) outboxes.get(d).enqueue(byDestination.get(d));
+        if (journaled) Files.delete(journal);
+    }
+
+    // [length][crc32] then per outbox: its name, the message count and each message as OutboundQueue encodes it
+    private void writeJournal(List<List<NotificationPipeline.Rendered>> byDestination) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        for (int d = 0; d < outboxes.size(); d++) {
+            List<NotificationPipeline.Rendered> to = byDestination.get(d);
+            if (to.isEmpty()) continue;
+            out.writeUTF(outboxes.get(d).name());
+            out.writeInt(to.size());
+            for (NotificationPipeline.Rendered r : to) {
+                byte[] record = OutboundQueue.encode(r);
+                out.writeInt(record.length);
+                out.write(record);
+            }
+        }
+        byte[] body = bos.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer bb = ByteBuffer.allocate(8 + body.length).putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+        try (FileChannel ch = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bb.hasRemaining()) ch.write(bb);
+            ch.force(false);
+        }
+    }
+
+    // A journal left behind by a crash: appends its messages to the outboxes that don't have them
+    // yet. A torn journal means the crash came before any outbox append, and the messages weren't
+    // marked seen, so the next poll brings them again
+    private void recover() throws IOException {
+        if (journal != null && Files.exists(journal)) {
+            ByteBuffer bb = ByteBuffer.wrap(Files.readAllBytes(journal));
+            if (bb.remaining() >= 8 && bb.getInt(0) == bb.remaining() - 8) {
+                CRC32 crc = new CRC32();
+                crc.update(bb.array(), 8, bb.remaining() - 8);
+                if ((int) crc.getValue() == bb.getInt(4)) replayJournal(bb.array());
+            }
+            Files.delete(journal);
+        }
+        recovered = true;
+    }
+
+    private void replayJournal(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 8, data.length - 8));
+        while (in.available() > 0) {
+            String name = in.readUTF();
+            List<NotificationPipeline.Rendered> batch = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) batch.add(OutboundQueue.decode(in.readNBytes(in.readInt())));
+            Outbox outbox = outboxes.stream().filter(o -> o.name().equals(name)).findFirst().orElse(null);
+            if (outbox == null) continue; // no longer configured
+            Set<String> queued = new HashSet<>();
+            outbox.replay(r -> queued.add(r.id()));
+            List<NotificationPipeline.Rendered> missing = batch.stream().filter(r -> !queued.contains(r.id())).toList();
+            if (missing.isEmpty()) continue;
+            System.err.println("Queueing " + missing.size() + " notifications for " + name + " left out by a crash");
+            outbox.enqueue(missing);
+        }
+    }
+
+    public int pending() {
+        int n = 0;
+        for (Outbox o : outboxes) n += o.pending();
+        return n;
+    }
+
+    // Every message from source still queued in any outbox (a message routed to several comes once per outbox)
+    public void replay(String source, Consumer<NotificationPipeline.Rendered> consumer) throws IOException {
+        for (Outbox o : outboxes) {
+            o.replay(r -> {
+                if (source.equals(r.source())) consumer.accept(r);
+            });
+        }
+    }
+
+    // Opens the queues, repairs a batch a crash left half appended and starts the senders (once this replica leads)
+    @Override
+    public synchronized void start() throws IOException {
+        for (Outbox o : outboxes) o.start();
+        if (!recovered) recover();
+    }
+
+    @Override
+    public void stop() throws IOException { close(); }
+
+    // Another replica may leave a journal behind before this one leads again
+    public synchronized void close() throws IOException {
+        recovered = false;
+        for (Outbox o : outboxes) o.close();
+    }
+}
@@ -1,36 +1,110 @@
 package com.arhan.integration;
 
-import jakarta.annotation.PostConstruct;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Activity;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The bot logs in in the background: build() returns right away and nothing waits for the
+// gateway, so the context (and the poller) start without it. Slash commands need no gateway
+// intents and the bot looks nothing up in its cache, so it runs with none of either (createLight)
 @Configuration
-public class DiscordBotConfig {
+public class DiscordBotConfig implements Leadership.Task {
+    private static final ObjectMapper OM = new ObjectMapper();
+
     private final String token;
     private final SlashListener listener;
+    private JDA jda;
+    // Seconds from build() to the gateway's ready event, NaN until then (discord.bot.ready)
+    private volatile double readySeconds = Double.NaN;
 
     public DiscordBotConfig(
-            @Value("${discord.botToken}") String token,
+            @Value("${discord.botToken:}") String token,
             SlashListener listener) {
         this.token = token;
         this.listener = listener;
+        IntegrationMetrics.botReady(this, b -> b.readySeconds);
+    }
+
+    // Everything the bot registers with Discord
+    static List<CommandData> commands() {
+        return List.of(Commands.slash("youtrack", "Create, find and show YouTrack issues")
+                .addSubcommands(
+                        new SubcommandData("create", "Create a YouTrack issue from text")
+                                .addOption(OptionType.STRING, "summary", "Issue summary", true),
+                        new SubcommandData("find", "Find recent issues by id, summary or state")
+                                .addOption(OptionType.STRING, "query", "Words to look for", true, true),
+                        new SubcommandData("show", "Show one issue")
+                                .addOption(OptionType.STRING, "issue", "Issue id, e.g. DEMO-12", true, true)));
     }
 
-    @PostConstruct
-    public void start() throws Exception {
-        var jda = JDABuilder.createDefault(token)
-                .addEventListeners(listener)
-                .setActivity(Activity.playing("/youtrack to create issue"))
+    // Only the leader runs the bot, or every replica would answer each command
+    @Override
+    public void start() {
+        if (token.isBlank()) {
+            System.err.println("discord.botToken is not set, the /youtrack command is disabled");
+            return;
+        }
+        long start = System.nanoTime();
+        jda = JDABuilder.createLight(token, EnumSet.noneOf(GatewayIntent.class))
+                .addEventListeners(listener, new ListenerAdapter() {
+                    @Override
+                    public void onReady(@NotNull ReadyEvent event) {
+                        readySeconds = (System.nanoTime() - start) / 1e9;
+                        registerCommands(event.getJDA());
+                    }
+                })
+                .setActivity(Activity.playing("/youtrack create, find, show"))
+                .setEnableShutdownHook(false) // Spring shuts it down
                 .build();
-        jda.awaitReady();
-
-        jda.updateCommands()
-                .addCommands(net.dv8tion.jda.api.interactions.commands.build.Commands
-                        .slash("youtrack", "Create a YouTrack issue from text")
-                        .addOption(net.dv8tion.jda.api.interactions.commands.OptionType.STRING,
-                                "summary", "Issue summary", true))
-                .queue();
     }
-}
\ No newline at end of file
+
+    @Override
+    @PreDestroy
+    public void stop() {
+        if (jda != null) jda.shutdown();
+        jda = null;
+    }
+
+    // Only uploads the commands when Discord's copy differs, instead of on every boot
+    private static void registerCommands(JDA jda) {
+        jda.retrieveCommands().queue(registered -> {
+            if (sameCommands(registered.stream().map(CommandData::fromCommand).toList(), commands())) return;
+            jda.updateCommands().addCommands(commands()).queue(
+                    ok -> System.out.println("Registered slash commands"),
+                    err -> System.err.println("Error registering slash commands: " + err.getMessage()));
+        }, err -> System.err.println("Error reading slash commands: " + err.getMessage()));
+    }
+
+    // Compared as JSON, so field order doesn't matter
+    static boolean sameCommands(List<CommandData> registered, List<CommandData> wanted) {
+        return byName(registered).equals(byName(wanted));
+    }
+
+    private static Map<String, JsonNode> byName(List<CommandData> commands) {
+        Map<String, JsonNode> out = new HashMap<>();
+        try {
+            for (CommandData c : commands) out.put(c.getName(), OM.readTree(c.toData().toJson()));
+        } catch (IOException e) { throw new UncheckedIOException(e); }
+        return out;
+    }
+}
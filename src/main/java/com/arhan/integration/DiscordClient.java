@@ -1,32 +1,83 @@
 package com.arhan.integration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.beans.factory.annotation.Value;
 import reactor.core.publisher.Mono;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.List;
 import java.util.Map;
 
 @Service
 public class DiscordClient {
+    private static final ObjectMapper OM = new ObjectMapper();
+
     private final WebClient http;
+    private final BlockingHttp blocking;
     private final String webhook;
 
-    public DiscordClient(WebClient http, @Value("${discord.webhookUrl}") String webhook) {
-        this.http = http; this.webhook = webhook;
+    @Autowired
+    public DiscordClient(WebClient http, BlockingHttp blocking, @Value("${discord.webhookUrl}") String webhook) {
+        this.http = http; this.blocking = blocking; this.webhook = webhook;
+    }
+
+    public DiscordClient(WebClient http, String webhook) {
+        this(http, BlockingHttp.defaults(), webhook);
     }
 
-    public Mono<Void> send(String title, String markdown) {
+    public record Embed(String title, String description) {}
+
+    // Status, headers and body of a webhook POST; rate limit handling is left to WebhookSender
+    public record WebhookResponse(int status, HttpHeaders headers, String body) {}
+
+    public String webhook() { return webhook; }
+
+    // Posts up to 10 embeds as one webhook message
+    public Mono<WebhookResponse> post(String webhookUrl, List<Embed> embeds) {
         // Using mono since it is non-blocking and simplifies async calls
-        Map<String,Object> embed = Map.of("title", title, "description", markdown);
-        Map<String,Object> body  = Map.of("embeds", new Object[]{ embed },
-                "allowed_mentions", Map.of("parse", new String[]{}));
-        return http.post()
-                .uri(webhook)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .toBodilessEntity()
-                .then();
+        Map<String, Object> body = body(embeds);
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return http.post()
+                    .uri(webhookUrl)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(body)
+                    .exchangeToMono(resp -> resp.bodyToMono(String.class)
+                            .defaultIfEmpty("")
+                            .map(b -> new WebhookResponse(resp.statusCode().value(), resp.headers().asHttpHeaders(), b)))
+                    .doOnSuccess(r -> IntegrationMetrics.discordSend(System.nanoTime() - start, String.valueOf(r.status())))
+                    .doOnError(e -> IntegrationMetrics.discordSend(System.nanoTime() - start, "error"));
+        });
+    }
+
+    // The same post, blocking, for the sequential loops
+    public WebhookResponse post(String webhookUrl, List<Embed> embeds, Pause pause) throws IOException, InterruptedException {
+        byte[] json = OM.writeValueAsBytes(body(embeds));
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> resp = blocking.postJson(webhookUrl, json, pause);
+            HttpHeaders headers = new HttpHeaders();
+            resp.headers().map().forEach(headers::addAll);
+            IntegrationMetrics.discordSend(System.nanoTime() - start, String.valueOf(resp.statusCode()));
+            return new WebhookResponse(resp.statusCode(), headers, resp.body() == null ? "" : resp.body());
+        } catch (IOException | RuntimeException e) {
+            IntegrationMetrics.discordSend(System.nanoTime() - start, "error");
+            throw e;
+        }
+    }
+
+    private static Map<String, Object> body(List<Embed> embeds) {
+        Object[] payload = new Object[embeds.size()];
+        for (int i = 0; i < payload.length; i++) {
+            Embed e = embeds.get(i);
+            payload[i] = Map.of("title", e.title(), "description", e.description());
+        }
+        return Map.of("embeds", payload, "allowed_mentions", Map.of("parse", new String[]{}));
     }
 }
@@ -0,0 +1,67 @@
+package com.arhan.integration;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Where the poll loop, formatting and delivery run (execution.mode):
+//  - reactive (default): Reactor schedulers, parallel for formatting and boundedElastic for disk I/O,
+//    HTTP on WebClient
+//  - virtual: the poller and each queue partition's sender run their sequential version on a
+//    virtual thread of their own: plain blocking code, HTTP on java.net.http (BlockingHttp), and
+//    one virtual thread per message to format it (VirtualThreadExecution, only in builds made
+//    with -Pjava21)
+public interface Execution {
+
+    // Applies fn to every item concurrently and emits the results in the items' order
+    <T, R> Flux<R> mapOrdered(List<T> items, int concurrency, Function<T, R> fn);
+
+    // mapOrdered for a sequential round: returns the results once every item is done
+    default <T, R> List<R> mapAll(List<T> items, int concurrency, Function<T, R> fn) {
+        return mapOrdered(items, concurrency, fn).collectList().block();
+    }
+
+    // Blocking work (queue appends and fsyncs, state files), kept off the event loop threads
+    <T> Mono<T> blocking(Callable<T> work);
+
+    // Runs round after round until disposed; a round only starts once the previous one completed
+    Disposable loop(String name, Supplier<Mono<Void>> round);
+
+    // The same loop with its round also written as plain blocking code: modes that give each
+    // loop a thread of its own run that one, the others the reactive round
+    default Disposable loop(String name, Supplier<Mono<Void>> round, Sequential sequential) {
+        return loop(name, round);
+    }
+
+    // One round of a loop as blocking code; every wait in it goes through pause
+    interface Sequential {
+        void run(Pause pause) throws Exception;
+    }
+
+    // Runs java.net.http's callbacks for the sequential loops (null: its own thread pool)
+    default Executor executor() { return null; }
+
+    default void close() {}
+
+    static Execution of(String mode) {
+        switch (mode) {
+            case "reactive":
+                return new ReactiveExecution();
+            case "virtual":
+                try {
+                    return (Execution) Class.forName("com.arhan.integration.VirtualThreadExecution")
+                            .getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    throw new IllegalStateException("execution.mode=virtual needs Java 21 and a build made with -Pjava21", e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown execution.mode: " + mode);
+        }
+    }
+}
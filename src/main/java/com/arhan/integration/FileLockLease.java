@@ -0,0 +1,53 @@
+package com.arhan.integration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A lease on <cluster.dir>/leader.lock: whoever holds an OS lock on the file is the leader. The OS
+// drops the lock when the process dies, however it dies, so a standby gets it on its next try. The
+// directory must support fcntl locks across all replicas (a local disk, or NFSv4). A leader that
+// hangs without dying keeps the lock
+public class FileLockLease implements LeaderLease {
+    private final Path file;
+    private FileChannel channel;
+    private FileLock lock;
+
+    public FileLockLease(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        this.file = dir.resolve("leader.lock");
+    }
+
+    @Override
+    public synchronized boolean tryAcquire() throws IOException {
+        if (lock != null && lock.isValid()) return true;
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // another lease in this JVM has it
+        }
+        if (lock == null) return false;
+        // Who holds it, for whoever looks at the file
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap((ProcessHandle.current().pid() + "\n").getBytes(StandardCharsets.UTF_8)), 0);
+        channel.force(false);
+        return true;
+    }
+
+    @Override
+    public synchronized void release() throws IOException {
+        if (lock != null && lock.isValid()) lock.release();
+        lock = null;
+        if (channel != null) channel.close();
+        channel = null;
+    }
+}
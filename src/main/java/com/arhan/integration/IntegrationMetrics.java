@@ -0,0 +1,191 @@
+package com.arhan.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.ToDoubleFunction;
+
+// Meters for the notification hot path. Timers and counters live in Micrometer's global registry
+// because the decoder and formatter are static; Spring Boot adds its own registries (Prometheus
+// included) to the global one, so everything shows up under /actuator/metrics and
+// /actuator/prometheus. Gauges go straight to the registries Boot binds them to (see gauge())
+final class IntegrationMetrics {
+    private static final MeterRegistry REGISTRY = Metrics.globalRegistry;
+
+    // YouTrack polling
+    static final Timer POLL_SUCCESS = pollTimer("success");
+    static final Timer POLL_ERROR = pollTimer("error");
+    static final DistributionSummary PAGE_BYTES = DistributionSummary.builder("yt.poll.page.size")
+            .description("Bytes of one /users/notifications page")
+            .baseUnit("bytes")
+            .publishPercentileHistogram()
+            .register(REGISTRY);
+    static final DistributionSummary NEW_ITEMS = tickItems("new");
+    static final DistributionSummary SEEN_ITEMS = tickItems("seen");
+
+    // Decoding and formatting
+    static final Timer DECODE = Timer.builder("yt.decode")
+            .description("base64 + gzip decode (and metadata parse) of one payload")
+            .publishPercentileHistogram()
+            .register(REGISTRY);
+    static final Timer FORMAT = Timer.builder("yt.format")
+            .description("Rendering one notification as Markdown")
+            .publishPercentileHistogram()
+            .register(REGISTRY);
+
+    // Delivery
+    static final Timer DELIVERY_LAG = Timer.builder("yt.delivery.lag")
+            .description("Notification timestamp (or when a pushed event arrived) to Discord acceptance")
+            .publishPercentileHistogram()
+            .register(REGISTRY);
+
+    static final DistributionSummary COALESCED = DistributionSummary.builder("yt.coalesce.merged")
+            .description("Notifications merged into one message by the coalescing window")
+            .register(REGISTRY);
+
+    // Issue creation from the slash command
+    static final Timer CREATE_ISSUE_SUCCESS = createIssueTimer("success");
+    static final Timer CREATE_ISSUE_ERROR = createIssueTimer("error");
+
+    static {
+        for (B64GzipDecoder.Failure kind : B64GzipDecoder.Failure.values()) {
+            FunctionCounter.builder("yt.decode.failures", YouTrackService.DECODER, d -> d.failures(kind))
+                    .description("Payloads that could not be decoded")
+                    .tag("kind", kind.name().toLowerCase())
+                    .register(REGISTRY);
+        }
+    }
+
+    // Guarded by the class. Gauges by name and tags, and the registries they are registered on
+    private static final Map<String, Latest> GAUGES = new HashMap<>();
+    private static final Set<MeterRegistry> BOUND = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private IntegrationMetrics() {}
+
+    private static Timer pollTimer(String outcome) {
+        return Timer.builder("yt.poll")
+                .description("One poll: all pages of /users/notifications")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(REGISTRY);
+    }
+
+    private static DistributionSummary tickItems(String kind) {
+        return DistributionSummary.builder("yt.poll.items")
+                .description("Notifications per poll, new or already delivered")
+                .tag("kind", kind)
+                .register(REGISTRY);
+    }
+
+    private static Timer createIssueTimer(String outcome) {
+        return Timer.builder("yt.issue.create")
+                .description("Creating an issue from /youtrack")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(REGISTRY);
+    }
+
+    // Webhook POST latency by HTTP status ("error" when there was no response); 429s are status=429
+    static void discordSend(long nanos, String status) {
+        Timer.builder("discord.send")
+                .description("Discord webhook POSTs")
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(REGISTRY)
+                .record(Duration.ofNanos(nanos));
+    }
+
+    // Posts refused for the webhook itself (401/403/404): the destination's queue stops draining until it's fixed
+    static void webhookRefused(String destination, int status) {
+        Counter.builder("discord.webhook.refused")
+                .description("Webhook posts refused by Discord for a bad or deleted webhook, kept queued")
+                .tag("destination", destination)
+                .tag("status", Integer.toString(status))
+                .register(REGISTRY)
+                .increment();
+    }
+
+    // From the notification's updated timestamp (or when a pushed event arrived) to Discord accepting it
+    static void deliveryLag(long timestampMillis) {
+        DELIVERY_LAG.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - timestampMillis)));
+    }
+
+    // Gauges read objects that come and go (an Outbox, a source's scheduler), so each name and tag
+    // set is registered once, on the registries Spring Boot binds (bindTo), and reads whichever
+    // owner asked for it last. Owners are held weakly: one that is replaced isn't kept alive by its gauge
+    static <T> void pollInterval(String source, T owner, ToDoubleFunction<T> seconds) {
+        gauge("yt.poll.interval", Tags.of("source", source), "Current delay between polls", "seconds", owner, seconds);
+    }
+
+    static <T> void indexSize(T owner, ToDoubleFunction<T> issues) {
+        gauge("yt.index.issues", Tags.empty(), "Issues in the autocomplete index", null, owner, issues);
+    }
+
+    static <T> void createQueued(T owner, ToDoubleFunction<T> waiting) {
+        gauge("yt.issue.create.queued", Tags.empty(), "/youtrack create requests waiting for a slot", null, owner, waiting);
+    }
+
+    static <T> void outboxPending(String destination, T owner, ToDoubleFunction<T> messages) {
+        gauge("yt.outbox.pending", Tags.of("destination", destination),
+                "Messages queued for a Discord webhook and not yet acknowledged", null, owner, messages);
+    }
+
+    static <T> void firstPoll(String source, T owner, ToDoubleFunction<T> seconds) {
+        gauge("yt.startup.first.poll", Tags.of("source", source),
+                "JVM start to the end of the first poll, NaN until it has run", "seconds", owner, seconds);
+    }
+
+    static <T> void botReady(T owner, ToDoubleFunction<T> seconds) {
+        gauge("discord.bot.ready", Tags.empty(),
+                "Bot login to the gateway's ready event, NaN until then (or without a bot token)", "seconds", owner, seconds);
+    }
+
+    static <T> void leader(T owner, ToDoubleFunction<T> leading) {
+        gauge("yt.leader", Tags.empty(), "1 while this replica holds the leader lease", null, owner, leading);
+    }
+
+    // Called by Spring Boot for each of its registries (Config.integrationGauges)
+    static synchronized void bindTo(MeterRegistry registry) {
+        if (!BOUND.add(registry)) return;
+        for (Latest g : GAUGES.values()) g.meter.register(registry);
+    }
+
+    private static synchronized <T> void gauge(String name, Tags tags, String description, String baseUnit,
+                                               T owner, ToDoubleFunction<T> value) {
+        Latest g = GAUGES.get(name + tags);
+        if (g == null) {
+            g = new Latest();
+            g.meter = Gauge.builder(name, g, Latest::read).description(description).tags(tags).baseUnit(baseUnit);
+            GAUGES.put(name + tags, g);
+            for (MeterRegistry r : BOUND) g.meter.register(r);
+        }
+        g.owner = new Owner<>(new WeakReference<>(owner), value);
+    }
+
+    private record Owner<T>(WeakReference<T> ref, ToDoubleFunction<T> value) {
+        double read() {
+            T o = ref.get();
+            return o == null ? Double.NaN : value.applyAsDouble(o);
+        }
+    }
+
+    private static final class Latest {
+        Gauge.Builder<Latest> meter;
+        volatile Owner<?> owner;
+
+        double read() { return owner.read(); }
+    }
+}
@@ -0,0 +1,217 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+// Issues from /youtrack create go through here instead of each firing its own request:
+//  - at most create.concurrency are created at once, the rest wait in line first come first served
+//    (up to create.maxQueued, after that a request is turned away) and hear their place in line
+//  - the same summary from the same user (case and spacing aside) while it is being created, or
+//    within create.dedupSeconds after, joins that request instead of creating a second issue
+//  - 5xx, 429 and connection failures are retried with backoff; a timeout isn't, since the
+//    issue may have been created anyway
+@Component
+public class IssueCreationQueue {
+
+    // What a requester hears about its issue, called outside the queue's lock
+    public interface Feedback {
+        // Its place in line (1 = next), 0 when its issue is being created
+        void queued(int position);
+        // first is false for a request that joined someone's identical one
+        void created(JsonNode issue, boolean first);
+        void failed(Throwable err);
+    }
+
+    public enum Submission { QUEUED, JOINED, REJECTED }
+
+    private final Function<String, Mono<JsonNode>> create;
+    private final int concurrency;
+    private final int maxQueued;
+    private final long dedupMillis;
+    private final int maxRetries;
+    private final Duration backoff;
+
+    // All guarded by this
+    private final ArrayDeque<Job> waiting = new ArrayDeque<>();
+    private final Map<String, Job> byKey = new HashMap<>();
+    private int running;
+
+    private static final class Job {
+        final String key;
+        final String summary;
+        final List<Feedback> feedback = new ArrayList<>();
+        JsonNode issue;
+        long doneAt;
+        Job(String key, String summary) {
+            this.key = key;
+            this.summary = summary;
+        }
+    }
+
+    @Autowired
+    public IssueCreationQueue(YouTrackService youtrack,
+                              @Value("${youtrack.projectId}") String projectId,
+                              @Value("${create.concurrency:2}") int concurrency,
+                              @Value("${create.maxQueued:100}") int maxQueued,
+                              @Value("${create.dedupSeconds:10}") long dedupSeconds,
+                              @Value("${create.maxRetries:3}") int maxRetries,
+                              @Value("${create.backoffMillis:500}") long backoffMillis) {
+        this(summary -> youtrack.createIssue(summary, projectId), concurrency, maxQueued,
+                TimeUnit.SECONDS.toMillis(dedupSeconds), maxRetries, Duration.ofMillis(backoffMillis));
+    }
+
+    IssueCreationQueue(Function<String, Mono<JsonNode>> create, int concurrency, int maxQueued,
+                       long dedupMillis, int maxRetries, Duration backoff) {
+        this.create = create;
+        this.concurrency = Math.max(1, concurrency);
+        this.maxQueued = maxQueued;
+        this.dedupMillis = dedupMillis;
+        this.maxRetries = maxRetries;
+        this.backoff = backoff;
+        IntegrationMetrics.createQueued(this, IssueCreationQueue::queued);
+    }
+
+    public Submission submit(String user, String summary, Feedback feedback) {
+        String key = user + "\u0000" + normalize(summary);
+        Job job;
+        JsonNode done = null;
+        int position = 0;
+        boolean joined = false;
+        boolean start = false;
+        synchronized (this) {
+            expire();
+            job = byKey.get(key);
+            if (job != null) {
+                joined = true;
+                if (job.issue != null) done = job.issue;
+                else {
+                    job.feedback.add(feedback);
+                    position = positionOf(job);
+                }
+            } else {
+                if (waiting.size() >= maxQueued) return Submission.REJECTED;
+                job = new Job(key, summary);
+                job.feedback.add(feedback);
+                byKey.put(key, job);
+                waiting.add(job);
+                // Something is only ever waiting while every slot is busy, so this takes our job
+                start = running < concurrency;
+                if (start) take();
+                position = positionOf(job);
+            }
+        }
+        if (done != null) feedback.created(done, false);
+        else feedback.queued(position);
+        if (start) run(job);
+        return joined ? Submission.JOINED : Submission.QUEUED;
+    }
+
+    public synchronized int queued() { return waiting.size(); }
+
+    // Case and runs of whitespace don't make a different issue
+    static String normalize(String summary) {
+        return summary.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // Place in line (1 = next), 0 once it is being created; caller holds the lock
+    private int positionOf(Job job) {
+        int i = 1;
+        for (Job j : waiting) {
+            if (j == job) return i;
+            i++;
+        }
+        return 0;
+    }
+
+    // Moves the next waiting job to running; caller holds the lock
+    private Job take() {
+        running++;
+        return waiting.poll();
+    }
+
+    private void run(Job job) {
+        long start = System.nanoTime();
+        create.apply(job.summary)
+                .retryWhen(Retry.backoff(maxRetries, backoff).filter(IssueCreationQueue::transientFailure))
+                .subscribe(
+                        issue -> {
+                            IntegrationMetrics.CREATE_ISSUE_SUCCESS.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                            finish(job, issue, null);
+                        },
+                        err -> {
+                            IntegrationMetrics.CREATE_ISSUE_ERROR.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                            finish(job, null, Exceptions.isRetryExhausted(err) ? err.getCause() : err);
+                        });
+    }
+
+    private void finish(Job job, JsonNode issue, Throwable err) {
+        List<Feedback> told;
+        Job next = null;
+        List<Job> moved;
+        synchronized (this) {
+            running--;
+            told = List.copyOf(job.feedback);
+            job.feedback.clear();
+            if (issue != null) {
+                job.issue = issue;
+                job.doneAt = System.currentTimeMillis();
+            } else {
+                byKey.remove(job.key); // a failed one may be tried again right away
+            }
+            if (!waiting.isEmpty()) next = take();
+            moved = new ArrayList<>(waiting);
+        }
+        for (int i = 0; i < told.size(); i++) {
+            if (issue != null) told.get(i).created(issue, i == 0);
+            else told.get(i).failed(err);
+        }
+        if (next == null) return;
+        // Everyone still waiting moved up one. Each update is an edit of someone's reply, so far
+        // back in a long line only every tenth place is announced
+        for (Feedback f : feedbackOf(next)) f.queued(0);
+        for (int i = 0; i < moved.size(); i++) {
+            int position = i + 1;
+            if (position > 5 && position % 10 != 0) continue;
+            for (Feedback f : feedbackOf(moved.get(i))) f.queued(position);
+        }
+        run(next);
+    }
+
+    private synchronized List<Feedback> feedbackOf(Job job) { return List.copyOf(job.feedback); }
+
+    // Forgets created issues older than the dedup window; caller holds the lock
+    private void expire() {
+        long cutoff = System.currentTimeMillis() - dedupMillis;
+        for (Iterator<Job> it = byKey.values().iterator(); it.hasNext(); ) {
+            Job j = it.next();
+            if (j.issue != null && j.doneAt < cutoff) it.remove();
+        }
+    }
+
+    static boolean transientFailure(Throwable err) {
+        if (err instanceof WebClientResponseException e) {
+            return e.getStatusCode().is5xxServerError() || e.getStatusCode().value() == 429;
+        }
+        // Connecting failed: the request never reached YouTrack
+        return err instanceof WebClientRequestException && !(err.getCause() instanceof TimeoutException);
+    }
+}
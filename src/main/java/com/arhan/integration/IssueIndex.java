@@ -0,0 +1,206 @@
+package com.arhan.integration;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Recent issues for /youtrack autocomplete, kept in memory so a suggestion never waits on YouTrack.
+// Fed by every change the pipeline formats, plus a sync of the most recently updated issues every
+// index.syncMinutes. Issue ids ("demo-12", "demo", "12"), summary words and states are tokens in a
+// sorted map, so each word of a query is a prefix range lookup; at most index.maxIssues issues are
+// kept and the one touched longest ago goes first
+@Component
+public class IssueIndex {
+    public record Issue(String id, String summary, String state, long updated) {}
+
+    private final int maxIssues;
+    private final YouTrackService youtrack;
+    private final Execution execution;
+    private final Duration syncInterval;
+    private final int syncSize;
+    private volatile Disposable syncLoop;
+
+    // Guarded by this
+    private final LinkedHashMap<String, Issue> issues = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Issue> eldest) {
+            if (size() <= maxIssues) return false;
+            unindex(eldest.getValue());
+            byId.remove(eldest.getKey());
+            return true;
+        }
+    };
+    // The same issues for lookups that mustn't count as an access (a get on issues moves the entry
+    // to the recent end), so searching doesn't keep issues alive
+    private final Map<String, Issue> byId = new HashMap<>();
+    private final TreeMap<String, Set<String>> tokens = new TreeMap<>();
+
+    @Autowired
+    public IssueIndex(NotificationPipeline pipeline, YouTrackService youtrack,
+                      @Value("${index.maxIssues:5000}") int maxIssues,
+                      @Value("${index.syncMinutes:15}") long syncMinutes,
+                      @Value("${index.syncSize:200}") int syncSize) {
+        this.maxIssues = Math.max(1, maxIssues);
+        this.youtrack = youtrack;
+        this.execution = pipeline.execution();
+        this.syncInterval = Duration.ofMinutes(syncMinutes);
+        this.syncSize = syncSize;
+        pipeline.onFormatted(this::record);
+        IntegrationMetrics.indexSize(this, IssueIndex::size);
+    }
+
+    IssueIndex(int maxIssues) {
+        this.maxIssues = Math.max(1, maxIssues);
+        this.youtrack = null;
+        this.execution = null;
+        this.syncInterval = Duration.ZERO;
+        this.syncSize = 0;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (syncInterval.isZero()) return;
+        syncLoop = execution.loop("yt-index-sync", () -> sync().then(Mono.delay(syncInterval)).then());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (syncLoop != null) syncLoop.dispose();
+    }
+
+    // Pulls the most recently updated issues; emits how many came back
+    public Mono<Integer> sync() {
+        return youtrack.searchIssues("sort by: updated desc", syncSize)
+                .map(found -> {
+                    putAll(found);
+                    return found.size();
+                })
+                .onErrorResume(err -> {
+                    System.err.println("Error syncing issue index: " + err.getMessage());
+                    return Mono.just(0);
+                });
+    }
+
+    // A change the pipeline just formatted
+    void record(YtMetadata meta, long ts) {
+        String id = meta.issue().id();
+        if (id == null || id.isBlank()) return;
+        put(new Issue(id, meta.issue().summary(), meta.field("State"), ts));
+    }
+
+    public synchronized void putAll(List<Issue> found) {
+        for (Issue i : found) put(i);
+    }
+
+    // Blank summary or state keep what was known; an older update doesn't replace a newer one
+    public synchronized void put(Issue issue) {
+        Issue old = issues.get(issue.id());
+        if (old != null) {
+            if (old.updated() > issue.updated()) return;
+            unindex(old);
+            issue = new Issue(issue.id(),
+                    blank(issue.summary()) ? old.summary() : issue.summary(),
+                    blank(issue.state()) ? old.state() : issue.state(),
+                    issue.updated());
+        }
+        issues.put(issue.id(), issue);
+        byId.put(issue.id(), issue);
+        for (String t : tokens(issue)) tokens.computeIfAbsent(t, k -> new HashSet<>()).add(issue.id());
+    }
+
+    public synchronized Issue get(String id) {
+        return id == null ? null : issues.get(id.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public synchronized int size() { return issues.size(); }
+
+    // Issues matching every word of the query by prefix, exact id first and then most recently
+    // updated; an empty query lists the most recently updated. Only the matches are looked at, and
+    // only the best limit of them are kept while they are, so a keystroke doesn't cost index.maxIssues
+    public synchronized List<Issue> search(String query, int limit) {
+        List<String> words = words(query);
+        Set<String> ids = null;
+        for (String w : words) {
+            Set<String> match = new HashSet<>();
+            SortedMap<String, Set<String>> range = tokens.subMap(w, w + Character.MAX_VALUE);
+            for (Set<String> s : range.values()) match.addAll(s);
+            if (ids == null) ids = match;
+            else ids.retainAll(match);
+            if (ids.isEmpty()) return List.of();
+        }
+        if (limit <= 0) return List.of();
+        String exact = query == null ? "" : query.trim();
+        Comparator<Issue> order = Comparator.comparing((Issue i) -> !i.id().equalsIgnoreCase(exact))
+                .thenComparing(Comparator.comparingLong(Issue::updated).reversed());
+        // The worst of the best so far on top, pushed out by anything better
+        PriorityQueue<Issue> best = new PriorityQueue<>(limit + 1, order.reversed());
+        for (Issue i : ids == null ? byId.values() : matches(ids)) {
+            best.add(i);
+            if (best.size() > limit) best.poll();
+        }
+        List<Issue> out = new ArrayList<>(best);
+        out.sort(order);
+        return out;
+    }
+
+    private List<Issue> matches(Set<String> ids) {
+        List<Issue> out = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Issue i = byId.get(id);
+            if (i != null) out.add(i);
+        }
+        return out;
+    }
+
+    private void unindex(Issue issue) {
+        for (String t : tokens(issue)) {
+            Set<String> ids = tokens.get(t);
+            if (ids == null) continue;
+            ids.remove(issue.id());
+            if (ids.isEmpty()) tokens.remove(t);
+        }
+    }
+
+    private static Set<String> tokens(Issue issue) {
+        Set<String> out = new LinkedHashSet<>(words(issue.id()));
+        out.addAll(words(issue.summary()));
+        out.addAll(words(issue.state()));
+        return out;
+    }
+
+    // Lower-cased words; "DEMO-12" is "demo-12", "demo" and "12"
+    static List<String> words(String s) {
+        List<String> out = new ArrayList<>();
+        if (s == null) return out;
+        for (String w : s.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}-]+")) {
+            if (w.isEmpty() || w.equals("-")) continue;
+            out.add(w);
+            if (w.indexOf('-') > 0) {
+                for (String part : w.split("-")) if (!part.isEmpty()) out.add(part);
+            }
+        }
+        return out;
+    }
+
+    private static boolean blank(String s) { return s == null || s.isBlank(); }
+}
@@ -0,0 +1,19 @@
+package com.arhan.integration;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Decides which replica polls and delivers when several run (cluster.enabled). FileLockLease is
+// the built-in one; another backend (a database row, Consul, ...) plugs in as a LeaderLease bean
+public interface LeaderLease extends Closeable {
+
+    // Takes the lease if it is free, or confirms this replica still holds it. Called every
+    // cluster.heartbeatMillis and must not block for long
+    boolean tryAcquire() throws IOException;
+
+    // Gives it up so a standby can take over right away
+    void release() throws IOException;
+
+    @Override
+    default void close() throws IOException { release(); }
+}
@@ -0,0 +1,127 @@
+package com.arhan.integration;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Runs the work only one replica may do (queues and senders, pollers, the bot) on the replica that
+// holds the LeaderLease. With cluster.enabled=false there is no lease and it starts right away. With
+// it, every replica tries for the lease each cluster.heartbeatMillis; the one that gets it opens the
+// shared state and starts, the others stay on standby, so a dead leader is replaced within about a
+// heartbeat. Tasks start in order and stop in reverse
+@Component
+public class Leadership {
+
+    // Something that must only run on the leader
+    public interface Task {
+        void start() throws Exception;
+        void stop() throws Exception;
+    }
+
+    private final LeaderLease lease; // null: single instance
+    private final long heartbeatMillis;
+    private final List<Task> tasks;
+    private final List<Task> started = new ArrayList<>();
+    private Scheduler timer;
+    private Disposable loop;
+    private volatile boolean leader;
+
+    @Autowired
+    public Leadership(ObjectProvider<LeaderLease> custom,
+                      @Value("${cluster.enabled:false}") boolean clustered,
+                      @Value("${cluster.dir:}") String dir,
+                      @Value("${cluster.heartbeatMillis:1000}") long heartbeatMillis,
+                      Destinations destinations, NotificationScheduler scheduler, SourcePollers sources,
+                      DiscordBotConfig bot) throws IOException {
+        this(clustered ? lease(custom, dir) : null, heartbeatMillis, List.of(destinations, scheduler, sources, bot));
+    }
+
+    Leadership(LeaderLease lease, long heartbeatMillis, List<Task> tasks) {
+        this.lease = lease;
+        this.heartbeatMillis = heartbeatMillis;
+        this.tasks = tasks;
+        IntegrationMetrics.leader(this, l -> l.leader ? 1 : 0);
+    }
+
+    private static LeaderLease lease(ObjectProvider<LeaderLease> custom, String dir) throws IOException {
+        LeaderLease own = custom.getIfAvailable();
+        if (own != null) return own;
+        if (dir.isBlank()) throw new IllegalStateException("cluster.dir must be set when cluster.enabled=true");
+        return new FileLockLease(Paths.get(dir));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void begin() {
+        if (lease == null) {
+            takeOver();
+            return;
+        }
+        System.out.println("Waiting for the leader lease");
+        timer = Schedulers.newSingle("yt-lease");
+        loop = timer.schedulePeriodically(this::check, 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean leader() { return leader; }
+
+    private synchronized void check() {
+        boolean held;
+        try {
+            held = lease.tryAcquire();
+        } catch (Exception e) {
+            System.err.println("Error renewing the leader lease: " + e.getMessage());
+            held = false;
+        }
+        if (held && !leader) takeOver();
+        else if (!held && leader) stepDown("lost the lease");
+    }
+
+    private void takeOver() {
+        leader = true;
+        try {
+            for (Task t : tasks) {
+                t.start();
+                started.add(t);
+            }
+            if (lease != null) System.out.println("Leader now (pid " + ProcessHandle.current().pid() + ")");
+        } catch (Exception e) {
+            System.err.println("Error taking over as leader: " + e.getMessage());
+            stepDown("could not start");
+            // Let another replica try
+            if (lease != null) {
+                try { lease.release(); } catch (IOException ignore) {}
+            }
+        }
+    }
+
+    private void stepDown(String why) {
+        leader = false;
+        for (int i = started.size() - 1; i >= 0; i--) {
+            try { started.get(i).stop(); }
+            catch (Exception e) { System.err.println("Error stopping " + started.get(i).getClass().getSimpleName() + ": " + e.getMessage()); }
+        }
+        started.clear();
+        if (lease != null) System.out.println("Standing down as leader: " + why);
+    }
+
+    // Stops the work before giving up the lease, so the next leader never overlaps with this one
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (loop != null) loop.dispose();
+        if (timer != null) timer.dispose();
+        if (leader) stepDown("shutting down");
+        if (lease != null) lease.close();
+    }
+}
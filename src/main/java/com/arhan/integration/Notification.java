@@ -0,0 +1,11 @@
+package com.arhan.integration;
+
+// Compact view of one /users/notifications entry: only the fields the scheduler uses.
+// metadata and content are kept as the raw base64 bytes from the response and decoded on demand
+public record Notification(String id, long updated, long notified, byte[] metadata, byte[] content) {
+
+    // Notifications carry "updated" when they were changed after being sent, otherwise only "notified"
+    public long timestamp() {
+        return updated > 0 ? updated : notified;
+    }
+}
@@ -0,0 +1,118 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Feeds response DataBuffers straight into Jackson's non-blocking parser and picks out the
+// notification fields as they stream past, so the body is never buffered into a String or a tree.
+// One instance per response; not thread safe
+class NotificationParser {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+    private final List<Notification> items = new ArrayList<>();
+
+    // 1 = inside the top-level array, 2 = inside a notification object, deeper values are skipped
+    private long bytes;
+    private int depth;
+    private String field;
+
+    private String id;
+    private long updated;
+    private long notified;
+    private byte[] metadata;
+    private byte[] content;
+
+    NotificationParser() {
+        try {
+            parser = JSON.createNonBlockingByteBufferParser();
+            feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+        } catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    void feed(DataBuffer buffer) {
+        try (DataBuffer.ByteBufferIterator it = buffer.readableByteBuffers()) {
+            while (it.hasNext()) feed(it.next());
+        }
+    }
+
+    // Everything in bb is parsed before this returns, so the caller can reuse it
+    void feed(ByteBuffer bb) {
+        bytes += bb.remaining();
+        try {
+            feeder.feedInput(bb);
+            drain();
+        } catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    // Size of the response so far
+    long bytes() { return bytes; }
+
+    List<Notification> finish() {
+        try {
+            feeder.endOfInput();
+            drain();
+            parser.close();
+        } catch (IOException e) { throw new UncheckedIOException(e); }
+        if (depth != 0) throw new IllegalStateException("Truncated notifications response");
+        return items;
+    }
+
+    private void drain() throws IOException {
+        JsonToken t;
+        while ((t = parser.nextToken()) != null && t != JsonToken.NOT_AVAILABLE) {
+            switch (t) {
+                case START_ARRAY, START_OBJECT -> {
+                    if (depth == 0 && t != JsonToken.START_ARRAY)
+                        throw new IllegalStateException("Expected a JSON array of notifications");
+                    if (++depth == 2) startItem();
+                }
+                case END_ARRAY, END_OBJECT -> {
+                    if (depth-- == 2) endItem();
+                }
+                case FIELD_NAME -> { if (depth == 2) field = parser.currentName(); }
+                default -> { if (depth == 2) value(t); }
+            }
+        }
+    }
+
+    private void value(JsonToken t) throws IOException {
+        if (t == JsonToken.VALUE_NULL || field == null) return;
+        switch (field) {
+            case "id" -> id = parser.getText();
+            case "updated" -> updated = t.isNumeric() ? parser.getLongValue() : 0;
+            case "notified" -> notified = t.isNumeric() ? parser.getLongValue() : 0;
+            case "metadata" -> metadata = asciiBytes();
+            case "content" -> content = asciiBytes();
+            default -> { }
+        }
+    }
+
+    // Base64 text is plain ASCII, so the parser's char buffer maps 1:1 onto bytes
+    private byte[] asciiBytes() throws IOException {
+        char[] chars = parser.getTextCharacters();
+        int off = parser.getTextOffset(), len = parser.getTextLength();
+        byte[] out = new byte[len];
+        for (int i = 0; i < len; i++) out[i] = (byte) chars[off + i];
+        return out;
+    }
+
+    private void startItem() {
+        id = null; updated = 0; notified = 0; metadata = null; content = null; field = null;
+    }
+
+    private void endItem() {
+        items.add(new Notification(id, updated, notified, metadata, content));
+        field = null;
+    }
+}
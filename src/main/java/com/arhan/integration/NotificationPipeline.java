@@ -0,0 +1,160 @@
+package com.arhan.integration;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static com.arhan.integration.YouTrackService.DECODER;
+import static com.arhan.integration.YouTrackService.decodeB64Gzip;
+
+// Turns notifications from one source into Discord posts in two halves joined by durable queues:
+//  1. decode + format in parallel (bounded by pipeline.concurrency, defaults to the core count),
+//     re-sequenced back into poll order, routed and appended by the caller
+//  2. each destination's Outbox drains its own queue (see Outbox)
+// Which threads do the work is up to the Execution (execution.mode)
+@Component
+public class NotificationPipeline {
+    private final String source;
+    private final String apiURL;
+    private final int concurrency;
+    private final Execution execution;
+    private final Destinations destinations;
+    private final boolean ownsDestinations;
+
+    // Told about every change that gets formatted (IssueIndex)
+    private final List<BiConsumer<YtMetadata, Long>> formatted = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public NotificationPipeline(Destinations destinations, Execution execution,
+                                @Value("${youtrack.baseUrl}") String apiURL,
+                                @Value("${pipeline.concurrency:0}") int concurrency) {
+        this(Router.DEFAULT, apiURL, concurrency, destinations, execution, false);
+    }
+
+    NotificationPipeline(WebhookSender sender, String apiURL, int concurrency, long lingerMillis, OutboundQueue queue) {
+        this(sender, apiURL, concurrency, lingerMillis, queue, new ReactiveExecution());
+    }
+
+    NotificationPipeline(WebhookSender sender, String apiURL, int concurrency, long lingerMillis, OutboundQueue queue,
+                         Execution execution) {
+        this(Router.DEFAULT, apiURL, concurrency,
+                Destinations.single(new Outbox(Router.DEFAULT, sender, queue, lingerMillis, execution)), execution, true);
+    }
+
+    // ownsDestinations: close() closes them too
+    NotificationPipeline(String source, String apiURL, int concurrency, Destinations destinations, Execution execution,
+                         boolean ownsDestinations) {
+        this.source = source;
+        this.apiURL = apiURL.replaceAll("/api/?$", ""); // regex to eliminate trailing /api
+        this.concurrency = concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+        this.destinations = destinations;
+        this.execution = execution;
+        this.ownsDestinations = ownsDestinations;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (ownsDestinations) destinations.close();
+    }
+
+    // A formatted notification; id is the notification id (comma-separated ids for a coalesced
+    // message), issueKey the issue id (or the notification id if there is none), changeKey is
+    // YtMetadata.changeKey() (null when the metadata couldn't be decoded), source the YouTrack it
+    // came from and to its destinations (not persisted; null routes it as undecodable)
+    public record Rendered(String id, long ts, String issueKey, String changeKey, DiscordClient.Embed embed,
+                           String source, BitSet to) {
+        public Rendered(String id, long ts, String issueKey, String changeKey, DiscordClient.Embed embed) {
+            this(id, ts, issueKey, changeKey, embed, Router.DEFAULT, null);
+        }
+    }
+
+    // Formats notifications in parallel and emits them in the order given
+    public Flux<Rendered> render(List<Notification> items) {
+        return execution.mapOrdered(items, concurrency, this::render);
+    }
+
+    // render() for a sequential round: returns once every notification is formatted
+    public List<Rendered> renderAll(List<Notification> items) {
+        return execution.mapAll(items, concurrency, this::render);
+    }
+
+    // A notification with its decoded metadata (null when it couldn't be decoded)
+    public record Decoded(Notification notification, YtMetadata meta) {}
+
+    // Decodes notifications in parallel and emits them in the order given, for callers that
+    // combine several before formatting
+    public Flux<Decoded> decode(List<Notification> items) {
+        return execution.mapOrdered(items, concurrency, NotificationPipeline::decoded);
+    }
+
+    public List<Decoded> decodeAll(List<Notification> items) {
+        return execution.mapAll(items, concurrency, NotificationPipeline::decoded);
+    }
+
+    private static Decoded decoded(Notification n) {
+        return new Decoded(n, decodeMetadata(n));
+    }
+
+    // Durably queues messages for delivery to their destinations (blocking: appends and fsyncs)
+    public void enqueue(List<Rendered> items) throws IOException {
+        destinations.enqueue(items);
+    }
+
+    public int pending() { return destinations.pending(); }
+
+    public String source() { return source; }
+
+    Execution execution() { return execution; }
+
+    public void onFormatted(BiConsumer<YtMetadata, Long> listener) { formatted.add(listener); }
+
+    // Every message from this source still queued, so the caller can rebuild state after a restart
+    public void replay(Consumer<Rendered> consumer) throws IOException {
+        destinations.replay(source, consumer);
+    }
+
+    // Metadata bytes go straight from the decoder into the JSON parser; falls back to the
+    // plain content when the metadata is missing, undecodable or has nothing to render
+    Rendered render(Notification n) {
+        return render(new Decoded(n, decodeMetadata(n)));
+    }
+
+    public Rendered render(Decoded d) {
+        Notification n = d.notification();
+        if (d.meta() != null) {
+            try { return render(d.meta(), n.id(), n.timestamp()); }
+            catch (Exception ignore) {}
+        }
+        return new Rendered(n.id(), n.timestamp(), n.id(), null,
+                new DiscordClient.Embed("YouTrack notification", decodeB64Gzip(n.content())),
+                source, destinations.route(source, null));
+    }
+
+    private static YtMetadata decodeMetadata(Notification n) {
+        long start = System.nanoTime();
+        try { return DECODER.decode(n.metadata(), YtMetadata::parse); }
+        catch (Exception e) { return null; }
+        finally { IntegrationMetrics.DECODE.record(System.nanoTime() - start, TimeUnit.NANOSECONDS); }
+    }
+
+    // Throws when the metadata has nothing to render (no change events)
+    public Rendered render(YtMetadata meta, String id, long ts) {
+        long start = System.nanoTime();
+        String md = YtFormatter.render(meta, apiURL, null);
+        IntegrationMetrics.FORMAT.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        for (BiConsumer<YtMetadata, Long> l : formatted) l.accept(meta, ts);
+        String issueKey = meta.issue().id().isBlank() ? id : meta.issue().id();
+        return new Rendered(id, ts, issueKey, meta.changeKey(), new DiscordClient.Embed("YouTrack notification", md),
+                source, destinations.route(source, meta));
+    }
+}
@@ -1,70 +1,461 @@
 package com.arhan.integration;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
-import static com.arhan.integration.YouTrackService.decodeB64Gzip;
-
+// Polls one YouTrack source. In cluster mode (openOnStart) its seen ids and watermark live in the
+// shared state.dir and are only opened once this replica leads (start), and closed again on stop
 @Component
-public class NotificationScheduler {
+public class NotificationScheduler implements Leadership.Task {
     private final YouTrackService youtrack;
-    private final DiscordClient discord;
-    private final String apiURL;
-    private final Set<String> seen = ConcurrentHashMap.newKeySet();
-    private final Path statePath = Paths.get(System.getProperty("user.home"), ".yt_seen_ids.txt");
+    private final NotificationPipeline pipeline;
+    private final Execution execution;
+    private final Settings settings;
+    private final String source;
+    private volatile SeenStore seen; // null until the state is opened
+    private final Path legacyStatePath = Paths.get(System.getProperty("user.home"), ".yt_seen_ids.txt");
+    private final Path statePath;
+    private final Path watermarkPath;
+    private final int pageSize;
+    private final int maxPages;
+
+    // High-water mark of the newest delivered notification (timestamp + id), so each poll
+    // only pages through what arrived since the last one
+    private volatile long watermarkTs;
+    private volatile String watermarkId = "";
+    // While a backlog deeper than maxPages is walked (resumeSkip > 0), where the next poll
+    // carries on and the newest notification of the walk, which becomes the watermark once the
+    // walk has reached the old one
+    private volatile int resumeSkip;
+    private long walkTopTs;
+    private String walkTopId = "";
+
+    // Adaptive single-flight poll loop
+    private final Duration baseInterval;
+    private final Duration minInterval;
+    private final Duration maxInterval;
+    private final Duration fetchTimeout;
+    private final double jitter;
+    private volatile Duration interval;
+    private volatile Disposable poller;
+    // Seconds from JVM start to the end of the first poll, NaN until then (yt.startup.first.poll)
+    private volatile double firstPollSeconds = Double.NaN;
+
+    // Held while queueing + marking seen, so a push and a poll can't both queue the same change
+    private final Object enqueueLock = new Object();
 
-    public NotificationScheduler(YouTrackService youtrack, DiscordClient discord,
-                                 @Value("${youtrack.baseUrl}") String apiURL) {
+    // Optional per-issue coalescing window (null when off), and the ids waiting in it; the
+    // watermark doesn't move past those until they are queued. Windows are flushed (queue append
+    // and fsync) on coalesceTimer's own thread, never on the poll loop or a push's event loop
+    private final Coalescer<Held> coalescer;
+    private final Scheduler coalesceTimer;
+    private final Set<String> coalescing = ConcurrentHashMap.newKeySet();
+
+    private record Held(String id, long ts, YtMetadata meta) {}
+
+    // Everything configured through properties, shared by the schedulers of all sources
+    record Settings(int pageSize, int maxPages, int maxSeenIds, long pollSeconds, long minSeconds, long maxSeconds,
+                    double jitter, long fetchTimeoutSeconds, boolean pushEnabled, long reconcileSeconds,
+                    boolean coalesce, long coalesceWindowMillis, int coalesceMaxEvents, int coalesceMaxKeys,
+                    Path stateDir, boolean openOnStart) {}
+
+    @Autowired
+    public NotificationScheduler(YouTrackService youtrack, NotificationPipeline pipeline,
+                                 @Value("${poll.pageSize:50}") int pageSize,
+                                 @Value("${poll.maxPages:20}") int maxPages,
+                                 @Value("${seen.maxIds:100000}") int maxSeenIds,
+                                 @Value("${poll.seconds}") long pollSeconds,
+                                 @Value("${poll.minSeconds:5}") long minSeconds,
+                                 @Value("${poll.maxSeconds:300}") long maxSeconds,
+                                 @Value("${poll.jitter:0.1}") double jitter,
+                                 @Value("${poll.fetchTimeoutSeconds:60}") long fetchTimeoutSeconds,
+                                 @Value("${push.enabled:false}") boolean pushEnabled,
+                                 @Value("${push.reconcileSeconds:600}") long reconcileSeconds,
+                                 @Value("${coalesce.enabled:false}") boolean coalesce,
+                                 @Value("${coalesce.windowMillis:3000}") long coalesceWindowMillis,
+                                 @Value("${coalesce.maxEvents:20}") int coalesceMaxEvents,
+                                 @Value("${coalesce.maxKeys:1000}") int coalesceMaxKeys,
+                                 @Value("${state.dir:${user.home}}") String stateDir,
+                                 @Value("${cluster.enabled:false}") boolean clustered) {
+        this(youtrack, pipeline, new Settings(pageSize, maxPages, maxSeenIds, pollSeconds, minSeconds, maxSeconds, jitter,
+                fetchTimeoutSeconds, pushEnabled, reconcileSeconds, coalesce, coalesceWindowMillis, coalesceMaxEvents,
+                coalesceMaxKeys, Paths.get(stateDir), clustered));
+    }
+
+    // State in the home directory, opened right away
+    NotificationScheduler(YouTrackService youtrack, NotificationPipeline pipeline, int pageSize, int maxPages,
+                          int maxSeenIds, long pollSeconds, long minSeconds, long maxSeconds, double jitter,
+                          long fetchTimeoutSeconds, boolean pushEnabled, long reconcileSeconds, boolean coalesce,
+                          long coalesceWindowMillis, int coalesceMaxEvents, int coalesceMaxKeys) {
+        this(youtrack, pipeline, new Settings(pageSize, maxPages, maxSeenIds, pollSeconds, minSeconds, maxSeconds, jitter,
+                fetchTimeoutSeconds, pushEnabled, reconcileSeconds, coalesce, coalesceWindowMillis, coalesceMaxEvents,
+                coalesceMaxKeys, Paths.get(System.getProperty("user.home")), false));
+    }
+
+    // Seen ids and watermark are kept per source (the pipeline's); the default source keeps the
+    // original file names
+    NotificationScheduler(YouTrackService youtrack, NotificationPipeline pipeline, Settings settings) {
         this.youtrack = youtrack;
-        this.discord = discord;
-        this.apiURL = apiURL.replaceAll("/api/?$", ""); // regex to eliminate trailing /api
-        loadSeen(); // Load the texts that have been seen
+        this.pipeline = pipeline;
+        this.settings = settings;
+        this.source = pipeline.source();
+        this.execution = pipeline.execution();
+        String suffix = Router.DEFAULT.equals(source) ? "" : "." + source;
+        this.statePath = settings.stateDir().resolve(".yt_seen" + suffix + ".log");
+        this.watermarkPath = settings.stateDir().resolve(".yt_watermark" + suffix + ".txt");
+        this.pageSize = settings.pageSize();
+        this.maxPages = settings.maxPages();
+        long pollSeconds = settings.pollSeconds();
+        long minSeconds = settings.minSeconds();
+        // With push on, polling is only a slow sweep for events the webhook missed
+        if (settings.pushEnabled()) {
+            pollSeconds = settings.reconcileSeconds();
+            minSeconds = settings.reconcileSeconds();
+        }
+        this.baseInterval = Duration.ofSeconds(pollSeconds);
+        this.minInterval = Duration.ofSeconds(Math.min(minSeconds, pollSeconds));
+        this.maxInterval = Duration.ofSeconds(Math.max(settings.maxSeconds(), pollSeconds));
+        this.fetchTimeout = Duration.ofSeconds(settings.fetchTimeoutSeconds());
+        this.jitter = settings.jitter();
+        this.interval = baseInterval;
+        IntegrationMetrics.pollInterval(source, this, s -> s.currentInterval().toMillis() / 1000.0);
+        IntegrationMetrics.firstPoll(source, this, s -> s.firstPollSeconds);
+        this.coalesceTimer = settings.coalesce() ? Schedulers.newSingle("yt-coalescer" + suffix) : null;
+        this.coalescer = settings.coalesce()
+                ? new Coalescer<>(settings.coalesceWindowMillis(), settings.coalesceMaxEvents(), settings.coalesceMaxKeys(),
+                        coalesceTimer, this::flushCoalesced)
+                : null;
+        if (!settings.openOnStart()) {
+            try { openState(); }
+            catch (IOException e) { throw new UncheckedIOException(e); }
+        }
+    }
+
+    // Load the notification IDs that have been delivered, so the webhook doesn't repost them upon restart
+    private synchronized void openState() throws IOException {
+        if (seen != null) return;
+        loadWatermark();
+        SeenStore store = new SeenStore(statePath, settings.maxSeenIds());
+        if (Router.DEFAULT.equals(source)) store.importLegacy(legacyStatePath, watermarkTs);
+        store.evictBefore(watermarkTs);
+        seen = store;
+        pipeline.replay(this::markSeen);
+    }
+
+    // False on a standby replica
+    public boolean active() { return seen != null; }
+
+    // A scheduler for another source with the same settings
+    NotificationScheduler forSource(YouTrackService youtrack, NotificationPipeline pipeline) {
+        return new NotificationScheduler(youtrack, pipeline, settings);
+    }
+
+    // Stops polling, queues what waits in the coalescing window and closes the state
+    @Override
+    public synchronized void stop() throws IOException {
+        if (poller != null) poller.dispose();
+        poller = null;
+        if (seen == null) return;
+        if (coalescer != null) coalescer.flushAll();
+        seen.close();
+        seen = null;
     }
 
-    // Two below functions load and save all notification IDs to avoid the webhook reposting
-    // the same messages upon restart
-    private void loadSeen() {
-        try { if (Files.exists(statePath)) Files.readAllLines(statePath).forEach(seen::add); }
-        catch (Exception ignore) {}
+    @PreDestroy
+    public void close() throws IOException {
+        stop();
+        if (coalesceTimer != null) coalesceTimer.dispose();
     }
 
+    // Only appends the ids delivered since the last save
     private void saveSeen() {
-        try { Files.write(statePath, seen, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING); }
-        catch (Exception ignore) {}
-    }
-
-    // Keeping poll time a secret (and since time is measured in ms we multiply by 1000)
-    // Uses EnableScheduling interface to fetch notifications at specified time interval defined by user
-    @Scheduled(fixedDelayString = "#{${poll.seconds} * 1000}")
-    public void tick() {
-        youtrack.fetchNotifications()
-                .publishOn(Schedulers.boundedElastic())
-                .subscribe(items -> {
-                    items.sort(Comparator.comparingLong(n -> n.path("updated").asLong(n.path("notified").asLong(0))));
-                    for (JsonNode n : items) {
-                        String id = n.path("id").asText();
-                        if (id == null || id.isBlank() || seen.contains(id)) continue;
-
-                        String metaJson = decodeB64Gzip(n.path("metadata").asText(""));
-                        String md;
-                        try { md = YtFormatter.fromMetadata(metaJson, apiURL); }
-                        catch (Exception ex) { md = decodeB64Gzip(n.path("content").asText("")); }
-
-                        discord.send("YouTrack notification", md).block();
-                        seen.add(id);
+        try { seen.flush(); }
+        catch (Exception e) { System.err.println("Error saving seen ids: " + e.getMessage()); }
+    }
+
+    private void loadWatermark() {
+        try {
+            if (!Files.exists(watermarkPath)) return;
+            String[] parts = Files.readString(watermarkPath).trim().split(" ", 2);
+            watermarkTs = Long.parseLong(parts[0]);
+            watermarkId = parts.length > 1 ? parts[1] : "";
+        } catch (Exception ignore) {}
+    }
+
+    // Written to a temp file and moved into place so a crash never leaves a half-written watermark
+    private void saveWatermark() {
+        try {
+            Path tmp = watermarkPath.resolveSibling(watermarkPath.getFileName() + ".tmp");
+            Files.writeString(tmp, watermarkTs + " " + watermarkId);
+            Files.move(tmp, watermarkPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception ignore) {}
+    }
+
+    // Polls one at a time: the next poll is only started once the previous one (fetch, queueing
+    // and persistence) and the wait after it have finished, so polls never overlap and race on the seen ids
+    @Override
+    public synchronized void start() throws IOException {
+        openState();
+        if (poller != null) return;
+        poller = execution.loop(Router.DEFAULT.equals(source) ? "yt-poller" : "yt-poller-" + source, () -> poll()
+                .flatMap(outcome -> {
+                    interval = nextInterval(interval, outcome);
+                    return Mono.delay(jittered(interval));
+                })
+                .then(), this::pollSequential);
+    }
+
+    // Current delay between polls (before jitter)
+    public Duration currentInterval() { return interval; }
+
+    private Mono<Outcome> poll() {
+        return youtrack.fetchNotificationsSince(watermarkTs, pageSize, maxPages, resumeSkip)
+                .timeout(fetchTimeout)
+                .flatMap(fetch -> {
+                    resumeSkip = fetch.resumeSkip();
+                    return process(fetch.items(), !fetch.truncated())
+                            .map(delivered -> delivered > 0 || fetch.truncated() ? Outcome.ACTIVE : Outcome.IDLE);
+                })
+                .onErrorResume(err -> {
+                    System.err.println("Error polling " + source + ": " + err.getMessage());
+                    return Mono.just(Outcome.ERROR);
+                })
+                .doOnNext(outcome -> {
+                    // Polls are single-flight, so only the first one sees NaN
+                    if (Double.isNaN(firstPollSeconds)) {
+                        firstPollSeconds = ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0;
                     }
-                    if (!items.isEmpty()) saveSeen();
-                }, err -> System.err.println("Error polling data from seen: " + err.getMessage()));
+                });
+    }
+
+    // The same round as plain blocking code, for loops that run on their own thread (execution.mode=virtual)
+    private void pollSequential(Pause pause) throws InterruptedException {
+        Outcome outcome;
+        try {
+            YouTrackService.Fetch fetch = youtrack.fetchNotificationsSince(watermarkTs, pageSize, maxPages, resumeSkip, fetchTimeout, pause);
+            resumeSkip = fetch.resumeSkip();
+            int delivered = processBlocking(fetch.items(), !fetch.truncated());
+            outcome = delivered > 0 || fetch.truncated() ? Outcome.ACTIVE : Outcome.IDLE;
+        } catch (CancellationException | InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            System.err.println("Error polling " + source + ": " + e.getMessage());
+            outcome = Outcome.ERROR;
+        }
+        if (Double.isNaN(firstPollSeconds)) {
+            firstPollSeconds = ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0;
+        }
+        interval = nextInterval(interval, outcome);
+        pause.sleep(jittered(interval));
+    }
+
+    private enum Outcome { ACTIVE, IDLE, ERROR }
+
+    // Active polls go back to the base interval and then halve towards poll.minSeconds while
+    // notifications keep coming; idle polls and errors double it up to poll.maxSeconds
+    Duration nextInterval(Duration current, Outcome outcome) {
+        if (outcome == Outcome.ACTIVE) {
+            Duration next = current.compareTo(baseInterval) > 0 ? baseInterval : current.dividedBy(2);
+            return next.compareTo(minInterval) < 0 ? minInterval : next;
+        }
+        Duration next = current.multipliedBy(2);
+        return next.compareTo(maxInterval) > 0 ? maxInterval : next;
+    }
+
+    private Duration jittered(Duration d) {
+        double factor = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Duration.ofMillis((long) (d.toMillis() * factor));
+    }
+
+    // Formats the new notifications of one poll, queues them for delivery and marks them seen;
+    // emits how many were new. Delivery itself happens in the background (NotificationPipeline)
+    Mono<Integer> process(List<Notification> items) { return process(items, true); }
+
+    // complete is false for a fetch that stopped at maxPages: what it got is delivered, but the
+    // watermark stays put until a later poll has paged down to it
+    Mono<Integer> process(List<Notification> items, boolean complete) {
+        List<Notification> fresh = fresh(items, complete);
+        Mono<List<NotificationPipeline.Rendered>> queued = coalescer == null
+                ? pipeline.render(fresh).collectList()
+                : pipeline.decode(fresh).collectList().map(this::coalesce);
+        return queued.flatMap(rendered -> execution.blocking(() -> queue(items, complete, fresh, rendered)));
+    }
+
+    // process() on the calling thread, for the sequential poll
+    int processBlocking(List<Notification> items, boolean complete) throws IOException {
+        List<Notification> fresh = fresh(items, complete);
+        return queue(items, complete, fresh, coalescer == null
+                ? pipeline.renderAll(fresh)
+                : coalesce(pipeline.decodeAll(fresh)));
+    }
+
+    // Sorts the fetched items and picks the ones not delivered yet
+    private List<Notification> fresh(List<Notification> items, boolean complete) {
+        items.sort(Comparator.comparingLong(Notification::timestamp)
+                .thenComparing(n -> n.id() == null ? "" : n.id()));
+        if (!complete && !items.isEmpty()) {
+            Notification newest = items.get(items.size() - 1);
+            synchronized (this) {
+                if (newest.timestamp() > walkTopTs) {
+                    walkTopTs = newest.timestamp();
+                    walkTopId = newest.id();
+                }
+            }
+        }
+        List<Notification> fresh = new ArrayList<>();
+        for (Notification n : items) {
+            String id = n.id();
+            // Anything older than the watermark was delivered already
+            if (id == null || id.isBlank() || n.timestamp() < watermarkTs) continue;
+            if (coalescing.contains(id) || seen.contains(id)) continue;
+            fresh.add(n);
+        }
+        IntegrationMetrics.NEW_ITEMS.record(fresh.size());
+        IntegrationMetrics.SEEN_ITEMS.record(items.size() - fresh.size());
+        return fresh;
+    }
+
+    // Queues what was rendered and persists how far the poll got; returns how many items were new
+    private int queue(List<Notification> items, boolean complete, List<Notification> fresh,
+                      List<NotificationPipeline.Rendered> rendered) throws IOException {
+        enqueueAndMarkSeen(rendered);
+        if (complete) advanceOverQueued(items);
+        if (!items.isEmpty()) {
+            seen.evictBefore(watermarkTs);
+            saveSeen();
+            saveWatermark();
+        }
+        return fresh.size();
+    }
+
+    // Hands everything that can be merged to the coalescer; returns the rest, rendered on its own
+    private List<NotificationPipeline.Rendered> coalesce(List<NotificationPipeline.Decoded> decoded) {
+        List<NotificationPipeline.Rendered> direct = new ArrayList<>();
+        for (NotificationPipeline.Decoded d : decoded) {
+            YtMetadata meta = d.meta();
+            if (meta == null || meta.change().events() == null || meta.issue().id().isBlank()) {
+                direct.add(pipeline.render(d));
+                continue;
+            }
+            Notification n = d.notification();
+            coalescing.add(n.id());
+            coalescer.offer(meta.issue().id(), new Held(n.id(), n.timestamp(), meta));
+        }
+        return direct;
+    }
+
+    // One closed coalescing window: the changes not already delivered (by push) go out as one message
+    private void flushCoalesced(List<Held> group) {
+        try {
+            synchronized (enqueueLock) {
+                List<Held> fresh = group.stream().filter(h -> !seen.contains(h.meta().changeKey())).toList();
+                if (!fresh.isEmpty()) {
+                    Held last = fresh.get(fresh.size() - 1);
+                    // All ids go into the queued message, so a restart marks every one of them seen
+                    String ids = String.join(",", fresh.stream().map(Held::id).toList());
+                    pipeline.enqueue(List.of(pipeline.render(
+                            YtMetadata.merge(fresh.stream().map(Held::meta).toList()), ids, last.ts())));
+                    IntegrationMetrics.COALESCED.record(fresh.size());
+                }
+                for (Held h : group) {
+                    seen.add(h.id(), h.ts());
+                    if (!h.id().equals(h.meta().changeKey())) seen.add(h.meta().changeKey(), h.ts());
+                }
+            }
+            saveSeen();
+        } catch (Exception e) {
+            // Not marked seen, so the next poll picks these up again
+            System.err.println("Error queueing coalesced notifications: " + e.getMessage());
+        } finally {
+            for (Held h : group) coalescing.remove(h.id());
+        }
+    }
+
+    // Queues one change pushed by the YouTrack workflow; emits false if it was already delivered
+    // (by an earlier push or a poll). It is recorded under its change key so the reconciliation
+    // poll skips the matching notification
+    public Mono<Boolean> deliverPushed(YtMetadata meta) {
+        String key = meta.changeKey();
+        if (seen == null) return Mono.error(new IllegalStateException("not the leader"));
+        if (coalescer != null) {
+            if (seen.contains(key) || !coalescing.add(key)) return Mono.just(false);
+            coalescer.offer(meta.issue().id(), new Held(key, System.currentTimeMillis(), meta));
+            return Mono.just(true);
+        }
+        return execution.blocking(() -> {
+            NotificationPipeline.Rendered r = pipeline.render(meta, key, System.currentTimeMillis());
+            if (enqueueAndMarkSeen(List.of(r)) == 0) return false;
+            saveSeen();
+            return true;
+        });
+    }
+
+    // Queues the messages whose change hasn't gone out yet (a push and a poll of the same change
+    // only queue it once) and marks all of them seen; returns how many were queued. The append is
+    // durable before anything is marked seen, and on startup everything still in the queue is
+    // marked seen again, so a crash in between neither loses nor repeats a message
+    private int enqueueAndMarkSeen(List<NotificationPipeline.Rendered> rendered) throws IOException {
+        synchronized (enqueueLock) {
+            List<NotificationPipeline.Rendered> toQueue = rendered.stream()
+                    .filter(r -> r.changeKey() == null || !seen.contains(r.changeKey()))
+                    .toList();
+            pipeline.enqueue(toQueue);
+            for (NotificationPipeline.Rendered r : rendered) markSeen(r);
+            return toQueue.size();
+        }
+    }
+
+    private void markSeen(NotificationPipeline.Rendered r) {
+        for (String id : r.id().split(",")) seen.add(id, r.ts());
+        if (r.changeKey() != null && !r.changeKey().equals(r.id())) seen.add(r.changeKey(), r.ts());
+    }
+
+    // Moves the watermark over the items of a complete fetch (oldest first) that are queued or
+    // delivered, stopping just before the oldest one still waiting in the coalescing window, so
+    // a later poll fetches that one again. With nothing waiting, the walk (if any) is over
+    private void advanceOverQueued(List<Notification> items) {
+        for (Notification n : items) {
+            String id = n.id();
+            if (id == null || id.isBlank() || n.timestamp() < watermarkTs) continue;
+            // seen after coalescing: a window's ids are marked seen before they leave coalescing
+            if (coalescing.contains(id) || !seen.contains(id)) return;
+            advanceWatermark(n.timestamp(), id);
+        }
+        finishWalk();
+    }
+
+    // A walk through a deep backlog reached the old watermark: everything up to its newest
+    // notification has been fetched
+    private synchronized void finishWalk() {
+        if (walkTopTs > watermarkTs) advanceWatermark(walkTopTs, walkTopId);
+        walkTopTs = 0;
+        walkTopId = "";
+    }
+
+    private void advanceWatermark(long ts, String id) {
+        watermarkTs = ts;
+        watermarkId = id;
     }
 }
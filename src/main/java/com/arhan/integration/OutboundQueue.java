@@ -0,0 +1,387 @@
+package com.arhan.integration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// File-backed outbound queue between formatting and Discord delivery: a write-ahead log per
+// partition (messages are partitioned by issue, so one issue's messages stay in order), split into
+// segment files named after the offset of their first record. Each record is
+// [length][crc32][payload]; a partition's ack file holds the offset of the first record that
+// hasn't been delivered yet. Segments are deleted once everything in them is acknowledged, and a
+// torn record at the end of the log (crash mid-write) is cut off when the queue is opened
+public class OutboundQueue implements Closeable {
+    private static final int HEADER = 8;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    // A queued message and the offset just past it (what to ack once it is delivered)
+    public record Entry(long next, NotificationPipeline.Rendered item) {}
+
+    private final Partition[] partitions;
+    private final long segmentBytes;
+
+    public OutboundQueue(Path dir, int partitions, long segmentBytes) throws IOException {
+        Files.createDirectories(dir);
+        // Keep draining partitions left over from a run with more lanes
+        int existing;
+        try (Stream<Path> s = Files.list(dir)) {
+            existing = (int) s.filter(p -> p.getFileName().toString().startsWith("p")).count();
+        }
+        this.partitions = new Partition[Math.max(Math.max(1, partitions), existing)];
+        this.segmentBytes = segmentBytes;
+        for (int i = 0; i < this.partitions.length; i++) {
+            this.partitions[i] = new Partition(dir.resolve("p" + i));
+        }
+    }
+
+    public int partitions() { return partitions.length; }
+
+    public int partitionOf(NotificationPipeline.Rendered r) {
+        return Math.floorMod(r.issueKey().hashCode(), partitions.length);
+    }
+
+    // Appends the messages and forces them to disk before returning
+    public void append(List<NotificationPipeline.Rendered> items) throws IOException {
+        List<List<byte[]>> byPartition = new ArrayList<>();
+        for (int i = 0; i < partitions.length; i++) byPartition.add(new ArrayList<>());
+        for (NotificationPipeline.Rendered r : items) byPartition.get(partitionOf(r)).add(encode(r));
+        for (int i = 0; i < partitions.length; i++) {
+            if (!byPartition.get(i).isEmpty()) partitions[i].append(byPartition.get(i));
+        }
+    }
+
+    // Up to max undelivered messages of one partition, oldest first
+    public List<Entry> read(int partition, int max) throws IOException {
+        return partitions[partition].read(max);
+    }
+
+    // Marks everything before next as delivered
+    public void ack(int partition, long next) throws IOException {
+        partitions[partition].ack(next);
+    }
+
+    public int pending(int partition) { return partitions[partition].pending(); }
+
+    public int pending() {
+        int n = 0;
+        for (Partition p : partitions) n += p.pending();
+        return n;
+    }
+
+    // Every message still on disk, delivered or not (the tail segment is never deleted, so this
+    // includes everything appended since the last restart's seen ids were saved)
+    public void replay(Consumer<NotificationPipeline.Rendered> consumer) throws IOException {
+        for (Partition p : partitions) p.replay(consumer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Partition p : partitions) p.close();
+    }
+
+    private final class Partition {
+        private final Path dir;
+        private final Path ackPath;
+        private final List<Long> segments = new ArrayList<>(); // base offsets, ascending
+        private FileChannel tail;
+        private long end;     // offset just past the last complete record
+        private long acked;   // offset of the first undelivered record
+        private int pending;
+        // What read() has decoded so far: the records between acked and cursor, so the next read
+        // carries on from cursor instead of scanning from acked again. reader stays open on the
+        // (non-tail) segment the cursor is in
+        private final ArrayDeque<Entry> unacked = new ArrayDeque<>();
+        private long cursor;
+        private FileChannel reader;
+        private long readerBase = -1;
+
+        Partition(Path dir) throws IOException {
+            this.dir = dir;
+            this.ackPath = dir.resolve("ack");
+            Files.createDirectories(dir);
+            try (Stream<Path> s = Files.list(dir)) {
+                s.map(p -> p.getFileName().toString())
+                        .filter(n -> n.endsWith(SEGMENT_SUFFIX))
+                        .map(n -> Long.parseLong(n.substring(0, n.length() - SEGMENT_SUFFIX.length())))
+                        .sorted()
+                        .forEach(segments::add);
+            }
+            acked = Files.exists(ackPath) ? Long.parseLong(Files.readString(ackPath).trim()) : 0;
+            if (segments.isEmpty()) segments.add(acked);
+            acked = Math.max(acked, segments.get(0));
+
+            // Find the end of the valid records in the tail segment and cut off anything torn
+            long base = segments.get(segments.size() - 1);
+            tail = FileChannel.open(segment(base), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long valid = scan(tail, 0, Long.MAX_VALUE, null);
+            if (valid < tail.size()) {
+                System.err.println("Truncating torn outbound queue record in " + segment(base));
+                tail.truncate(valid);
+                tail.force(true);
+            }
+            tail.position(valid);
+            end = base + valid;
+            acked = Math.min(acked, end);
+            cursor = acked;
+
+            pending = countFrom(acked);
+        }
+
+        private Path segment(long base) {
+            return dir.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+        }
+
+        synchronized void append(List<byte[]> records) throws IOException {
+            if (tail.size() >= segmentBytes) roll();
+            ByteBuffer[] buffers = new ByteBuffer[records.size()];
+            long size = 0;
+            for (int i = 0; i < buffers.length; i++) {
+                byte[] payload = records.get(i);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                ByteBuffer bb = ByteBuffer.allocate(HEADER + payload.length);
+                bb.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+                buffers[i] = bb;
+                size += bb.remaining();
+            }
+            long written = 0;
+            while (written < size) written += tail.write(buffers);
+            tail.force(false);
+            end += size;
+            pending += records.size();
+        }
+
+        private void roll() throws IOException {
+            tail.force(true);
+            tail.close();
+            segments.add(end);
+            tail = FileChannel.open(segment(end), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        synchronized List<Entry> read(int max) throws IOException {
+            while (unacked.size() < max && cursor < end) readMore(max);
+            List<Entry> out = new ArrayList<>(Math.min(max, unacked.size()));
+            for (Entry e : unacked) {
+                if (out.size() == max) break;
+                out.add(e);
+            }
+            return out;
+        }
+
+        // Decodes records from cursor on until max are buffered or the cursor's segment ends
+        private void readMore(int max) throws IOException {
+            int i = segments.size() - 1;
+            while (segments.get(i) > cursor) i--;
+            long base = segments.get(i);
+            long limit = i + 1 < segments.size() ? segments.get(i + 1) : end;
+            long pos = scan(channel(i), cursor - base, limit - base, (next, payload) -> {
+                unacked.add(new Entry(base + next, decode(payload)));
+                return unacked.size() < max;
+            });
+            if (unacked.size() == max) {
+                cursor = base + pos;
+            } else {
+                cursor = limit;
+                // A corrupt record in an older segment: skip the rest of it, like forEachFrom does.
+                // What was skipped will never be read, so it no longer counts as pending
+                if (base + pos < limit) {
+                    System.err.println("Skipping corrupt outbound queue records in " + segment(base) + " from " + pos);
+                    pending = unacked.size() + countFrom(cursor);
+                }
+            }
+        }
+
+        private int countFrom(long offset) throws IOException {
+            int[] n = {0};
+            forEachFrom(offset, (next, payload) -> {
+                n[0]++;
+                return true;
+            });
+            return n[0];
+        }
+
+        // The segment at index i for reading: the tail itself, or the reader kept open on it
+        private FileChannel channel(int i) throws IOException {
+            if (i == segments.size() - 1) return tail;
+            long base = segments.get(i);
+            if (readerBase != base) {
+                closeReader();
+                reader = FileChannel.open(segment(base), StandardOpenOption.READ);
+                readerBase = base;
+            }
+            return reader;
+        }
+
+        private void closeReader() throws IOException {
+            if (reader != null) reader.close();
+            reader = null;
+            readerBase = -1;
+        }
+
+        synchronized void ack(long next) throws IOException {
+            if (next <= acked) return;
+            int done = 0;
+            while (!unacked.isEmpty() && unacked.peekFirst().next() <= next) {
+                unacked.pollFirst();
+                done++;
+            }
+            if (next > cursor) {
+                // Past anything read() handed out, count the rest from the log
+                int[] more = {0};
+                forEachFrom(cursor, (pos, payload) -> {
+                    if (pos > next) return false;
+                    more[0]++;
+                    return pos < next;
+                });
+                done += more[0];
+                unacked.clear();
+                cursor = next;
+            }
+            pending -= done;
+            acked = next;
+            // Written to a temp file, forced to disk and only then moved into place, so a crash never
+            // leaves a half-written (or, after the rename, an empty) offset
+            Path tmp = dir.resolve("ack.tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bb = ByteBuffer.wrap(Long.toString(acked).getBytes(StandardCharsets.US_ASCII));
+                while (bb.hasRemaining()) ch.write(bb);
+                ch.force(true);
+            }
+            Files.move(tmp, ackPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Whole segments before the ack offset are done (the tail is always kept)
+            while (segments.size() > 1 && segments.get(1) <= acked) {
+                long base = segments.remove(0);
+                if (base == readerBase) closeReader();
+                Files.deleteIfExists(segment(base));
+            }
+        }
+
+        synchronized int pending() { return pending; }
+
+        synchronized void replay(Consumer<NotificationPipeline.Rendered> consumer) throws IOException {
+            forEachFrom(segments.get(0), (next, payload) -> {
+                consumer.accept(decode(payload));
+                return true;
+            });
+        }
+
+        synchronized void close() throws IOException {
+            closeReader();
+            tail.close();
+        }
+
+        // Visits records from offset (a record boundary) on, with the offset just past each one,
+        // until the visitor returns false
+        private void forEachFrom(long offset, RecordVisitor visitor) throws IOException {
+            boolean[] more = {true};
+            for (int i = 0; i < segments.size() && more[0] && offset < end; i++) {
+                long base = segments.get(i);
+                long next = i + 1 < segments.size() ? segments.get(i + 1) : end;
+                if (offset >= next) continue;
+                try (FileChannel ch = FileChannel.open(segment(base), StandardOpenOption.READ)) {
+                    scan(ch, Math.max(0, offset - base), next - base,
+                            (pos, payload) -> more[0] = visitor.visit(base + pos, payload));
+                }
+                offset = next;
+            }
+        }
+    }
+
+    private interface RecordVisitor {
+        // pos is the position (or offset) just past the record; false stops the scan
+        boolean visit(long pos, byte[] payload) throws IOException;
+    }
+
+    // Walks records from start up to limit and returns the position after the last valid one
+    private static long scan(FileChannel ch, long start, long limit, RecordVisitor visitor) throws IOException {
+        long size = Math.min(ch.size(), limit);
+        long pos = start;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while (pos + HEADER <= size) {
+            header.clear();
+            if (readFully(ch, header, pos) < HEADER) break;
+            int len = header.getInt(0);
+            int crc = header.getInt(4);
+            if (len < 0 || pos + HEADER + len > size) break;
+            ByteBuffer payload = ByteBuffer.allocate(len);
+            readFully(ch, payload, pos + HEADER);
+            CRC32 check = new CRC32();
+            check.update(payload.array());
+            if ((int) check.getValue() != crc) break;
+            pos += HEADER + len;
+            if (visitor != null && !visitor.visit(pos, payload.array())) break;
+        }
+        return pos;
+    }
+
+    private static int readFully(FileChannel ch, ByteBuffer bb, long pos) throws IOException {
+        int total = 0;
+        while (bb.hasRemaining()) {
+            int n = ch.read(bb, pos + total);
+            if (n < 0) break;
+            total += n;
+        }
+        return total;
+    }
+
+    static byte[] encode(NotificationPipeline.Rendered r) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256 + r.embed().description().length());
+        DataOutputStream out = new DataOutputStream(bos);
+        writeString(out, r.id());
+        out.writeLong(r.ts());
+        writeString(out, r.issueKey());
+        writeString(out, r.changeKey());
+        writeString(out, r.embed().title());
+        writeString(out, r.embed().description());
+        writeString(out, r.source());
+        return bos.toByteArray();
+    }
+
+    static NotificationPipeline.Rendered decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String id = readString(in);
+        long ts = in.readLong();
+        String issueKey = readString(in);
+        String changeKey = readString(in);
+        String title = readString(in);
+        String description = readString(in);
+        // Entries written before there were several sources end here
+        String source = in.available() > 0 ? readString(in) : Router.DEFAULT;
+        return new NotificationPipeline.Rendered(id, ts, issueKey, changeKey, new DiscordClient.Embed(title, description),
+                source, null);
+    }
+
+    // Length-prefixed UTF-8 (writeUTF stops at 64K), -1 for null
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) return null;
+        return new String(in.readNBytes(len), StandardCharsets.UTF_8);
+    }
+}
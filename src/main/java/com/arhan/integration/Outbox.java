@@ -0,0 +1,203 @@
+package com.arhan.integration;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// One destination's durable OutboundQueue and its senders: one per queue partition (pipeline.lanes,
+// keyed by issue id) drains it, up to 10 embeds per webhook post, and acknowledges what Discord
+// accepted or rejected as malformed (400, 413); a slow or failing partition doesn't hold back the
+// others, and whatever wasn't acknowledged is sent again after a restart. Every destination has
+// its own, so a slow channel only backs up its own queue
+public class Outbox {
+    private static final Duration MAX_REDELIVERY_BACKOFF = Duration.ofMinutes(1);
+
+    private final String name;
+    private final WebhookSender sender;
+    private final Callable<OutboundQueue> opener;
+    private final Duration linger;
+    private final Execution execution;
+
+    // Set while started. Per partition: the signal an idle sender waits on, its consecutive
+    // failures and its loop
+    private volatile OutboundQueue queue;
+    private AtomicReferenceArray<CompletableFuture<Void>> doorbells;
+    private int[] failures;
+    private Disposable.Composite senders;
+
+    public Outbox(String name, WebhookSender sender, OutboundQueue queue, long lingerMillis, Execution execution) {
+        this(name, sender, () -> queue, lingerMillis, execution);
+        start();
+    }
+
+    // Doesn't touch the queue until start(), for a standby replica that mustn't open the shared one
+    Outbox(String name, WebhookSender sender, Callable<OutboundQueue> opener, long lingerMillis, Execution execution) {
+        this.name = name;
+        this.sender = sender;
+        this.opener = opener;
+        this.linger = Duration.ofMillis(lingerMillis);
+        this.execution = execution;
+        IntegrationMetrics.outboxPending(name, this, Outbox::pending);
+    }
+
+    public String name() { return name; }
+
+    // Opens the queue and starts a sender per partition
+    public synchronized void start() {
+        if (queue != null) return;
+        OutboundQueue q;
+        try { q = opener.call(); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+        catch (Exception e) { throw new IllegalStateException(e); }
+        doorbells = new AtomicReferenceArray<>(q.partitions());
+        failures = new int[q.partitions()];
+        senders = Disposables.composite();
+        queue = q;
+        String prefix = Router.DEFAULT.equals(name) ? "yt-sender-" : "yt-sender-" + name + "-";
+        for (int p = 0; p < q.partitions(); p++) {
+            int partition = p;
+            senders.add(execution.loop(prefix + p, () -> drainOnce(partition), pause -> drainSequential(partition, pause)));
+        }
+    }
+
+    // Stops the senders and closes the queue; start() opens it again
+    public synchronized void close() throws IOException {
+        if (queue == null) return;
+        senders.dispose();
+        queue.close();
+        queue = null;
+    }
+
+    // Durably queues messages (blocking: appends and fsyncs) and wakes the senders
+    public void enqueue(List<NotificationPipeline.Rendered> items) throws IOException {
+        if (items.isEmpty()) return;
+        OutboundQueue q = open();
+        q.append(items);
+        for (int p = 0; p < doorbells.length(); p++) {
+            CompletableFuture<Void> bell = doorbells.get(p);
+            if (bell != null) bell.complete(null);
+        }
+    }
+
+    public int pending() {
+        OutboundQueue q = queue;
+        return q == null ? 0 : q.pending();
+    }
+
+    public void replay(Consumer<NotificationPipeline.Rendered> consumer) throws IOException {
+        open().replay(consumer);
+    }
+
+    private OutboundQueue open() {
+        OutboundQueue q = queue;
+        if (q == null) throw new IllegalStateException("outbox " + name + " is not started");
+        return q;
+    }
+
+    // One round of a partition's sender: send the next batch, or wait for new messages
+    private Mono<Void> drainOnce(int p) {
+        // Set before reading, so an append after the read still wakes us up
+        CompletableFuture<Void> bell = new CompletableFuture<>();
+        doorbells.set(p, bell);
+        return execution.blocking(() -> open().read(p, WebhookSender.MAX_EMBEDS))
+                .flatMap(entries -> entries.isEmpty()
+                        ? Mono.fromFuture(bell).then(Mono.delay(linger)).then() // let a burst build up a batch
+                        : deliver(p, WebhookSender.pack(entries, e -> e.item().embed()).get(0)))
+                .onErrorResume(err -> {
+                    System.err.println("Error reading outbound queue " + name + ": " + err.getMessage());
+                    return Mono.delay(redeliveryBackoff(p)).then();
+                });
+    }
+
+    // The same round as plain blocking code, for loops that run on their own thread (execution.mode=virtual)
+    private void drainSequential(int p, Pause pause) throws InterruptedException, ExecutionException {
+        CompletableFuture<Void> bell = new CompletableFuture<>();
+        doorbells.set(p, bell);
+        List<OutboundQueue.Entry> entries;
+        try { entries = open().read(p, WebhookSender.MAX_EMBEDS); }
+        catch (IOException | RuntimeException e) {
+            System.err.println("Error reading outbound queue " + name + ": " + e.getMessage());
+            pause.sleep(redeliveryBackoff(p));
+            return;
+        }
+        if (entries.isEmpty()) {
+            pause.await(bell);
+            pause.sleep(linger);
+            return;
+        }
+        List<OutboundQueue.Entry> batch = WebhookSender.pack(entries, e -> e.item().embed()).get(0);
+        try {
+            sender.send(batch.stream().map(e -> e.item().embed()).toList(), pause);
+        } catch (CancellationException | InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            Duration backoff = failed(p, e);
+            if (backoff != null) {
+                pause.sleep(backoff);
+                return;
+            }
+        }
+        ack(p, batch);
+    }
+
+    private Mono<Void> deliver(int p, List<OutboundQueue.Entry> batch) {
+        return sender.send(batch.stream().map(e -> e.item().embed()).toList())
+                .then(acked(p, batch))
+                .onErrorResume(err -> {
+                    Duration backoff = failed(p, err);
+                    return backoff == null ? acked(p, batch) : Mono.delay(backoff).then();
+                })
+                .then();
+    }
+
+    // How long to wait before sending a batch again after err, or null to drop it
+    private Duration failed(int p, Throwable err) {
+        if (err instanceof WebhookSender.Rejected rejected) {
+            if (rejected.badMessage()) {
+                // Discord will never take these, don't let them block the partition
+                System.err.println("Dropping notifications rejected by Discord (" + name + "): " + err.getMessage());
+                return null;
+            }
+            // The webhook was deleted or isn't ours any more: keep everything queued until it's fixed
+            IntegrationMetrics.webhookRefused(name, rejected.status);
+            System.err.println("ALARM: Discord refuses the webhook of " + name + " (" + rejected.status
+                    + "), check its URL; keeping " + pending() + " notifications queued");
+            return redeliveryBackoff(p);
+        }
+        System.err.println("Error delivering notifications to " + name + ": " + err.getMessage());
+        return redeliveryBackoff(p);
+    }
+
+    private Mono<Void> acked(int p, List<OutboundQueue.Entry> batch) {
+        return execution.blocking(() -> {
+            ack(p, batch);
+            return null;
+        });
+    }
+
+    private void ack(int p, List<OutboundQueue.Entry> batch) {
+        failures[p] = 0;
+        OutboundQueue q = queue;
+        if (q == null) return; // closed meanwhile, it goes out again from the queue
+        try { q.ack(p, batch.get(batch.size() - 1).next()); }
+        catch (IOException e) { System.err.println("Error saving outbound queue offset: " + e.getMessage()); }
+        for (OutboundQueue.Entry e : batch) IntegrationMetrics.deliveryLag(e.item().ts());
+    }
+
+    // 1s, 2s, 4s ... up to a minute while Discord keeps failing
+    private Duration redeliveryBackoff(int p) {
+        Duration d = Duration.ofSeconds(1L << Math.min(failures[p]++, 6));
+        return d.compareTo(MAX_REDELIVERY_BACKOFF) > 0 ? MAX_REDELIVERY_BACKOFF : d;
+    }
+}
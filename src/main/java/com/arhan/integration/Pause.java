@@ -0,0 +1,79 @@
+package com.arhan.integration;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The waits of a sequential loop round (Execution.Sequential): sleeps, doorbells and HTTP
+// exchanges. Stopping the loop ends them with a CancellationException instead of interrupting
+// the thread, which would close the file channels (queue, seen ids) it is in the middle of using.
+// A lock and condition rather than wait/notify, which would pin a virtual thread to its carrier
+public final class Pause {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private volatile boolean stopped;
+
+    public boolean stopped() { return stopped; }
+
+    // Ends every wait, now and later
+    public void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            changed.signalAll();
+        } finally { lock.unlock(); }
+    }
+
+    public void sleep(Duration d) throws InterruptedException {
+        long deadline = System.nanoTime() + d.toNanos();
+        lock.lock();
+        try {
+            for (long left = d.toNanos(); left > 0 && !stopped; left = deadline - System.nanoTime()) {
+                changed.awaitNanos(left);
+            }
+        } finally { lock.unlock(); }
+        if (stopped) throw new CancellationException("stopped");
+    }
+
+    // Waits for f to complete; f is cancelled if the loop stops first
+    public <T> T await(CompletableFuture<T> f) throws InterruptedException, ExecutionException {
+        try { return await(f, null); }
+        catch (TimeoutException e) { throw new IllegalStateException(e); } // no limit, can't happen
+    }
+
+    // Waits for f to complete, at most max; f is cancelled when that runs out or the loop stops
+    public <T> T await(CompletableFuture<T> f, Duration max) throws InterruptedException, ExecutionException, TimeoutException {
+        f.whenComplete((v, e) -> signal());
+        long deadline = max == null ? 0 : System.nanoTime() + max.toNanos();
+        lock.lock();
+        try {
+            while (!f.isDone() && !stopped) {
+                if (max == null) {
+                    changed.await();
+                    continue;
+                }
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    f.cancel(true);
+                    throw new TimeoutException("No answer within " + max.toMillis() + " ms");
+                }
+                changed.awaitNanos(left);
+            }
+        } finally { lock.unlock(); }
+        if (!f.isDone()) {
+            f.cancel(true);
+            throw new CancellationException("stopped");
+        }
+        return f.get();
+    }
+
+    private void signal() {
+        lock.lock();
+        try { changed.signalAll(); }
+        finally { lock.unlock(); }
+    }
+}
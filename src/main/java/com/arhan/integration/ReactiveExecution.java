@@ -0,0 +1,36 @@
+package com.arhan.integration;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// The default execution mode: formatting on the parallel scheduler (one thread per core), disk
+// I/O on boundedElastic, loops as repeated Monos that don't hold a thread between rounds
+public class ReactiveExecution implements Execution {
+    private final Scheduler cpu = Schedulers.parallel();
+    private final Scheduler io = Schedulers.boundedElastic();
+
+    @Override
+    public <T, R> Flux<R> mapOrdered(List<T> items, int concurrency, Function<T, R> fn) {
+        return Flux.fromIterable(items)
+                .flatMapSequential(item -> Mono.fromCallable(() -> fn.apply(item)).subscribeOn(cpu), concurrency);
+    }
+
+    @Override
+    public <T> Mono<T> blocking(Callable<T> work) {
+        return Mono.fromCallable(work).subscribeOn(io);
+    }
+
+    @Override
+    public Disposable loop(String name, Supplier<Mono<Void>> round) {
+        return Mono.defer(round).repeat().subscribe(null,
+                err -> System.err.println("Error in " + name + ", stopped: " + err.getMessage()));
+    }
+}
@@ -0,0 +1,112 @@
+package com.arhan.integration;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Picks the destinations of a notification from the routing rules. The rules are compiled once into
+// a table per attribute (source, project, tag, saved search, priority) from each value to the rules
+// that accept it, plus the rules that don't look at that attribute; the matching rules are the AND
+// of one OR per attribute, so routing is a few map lookups and bitset ops however many rules there
+// are. Whatever no rule matches goes to the default destination (index 0)
+public class Router {
+    public static final String DEFAULT = "default";
+
+    private static final int SOURCE = 0, PROJECT = 1, TAG = 2, SEARCH = 3, PRIORITY = 4, ATTRIBUTES = 5;
+
+    private final List<String> destinations;
+    private final int rules;
+    private final BitSet[] unconstrained = new BitSet[ATTRIBUTES];
+    private final List<Map<String, BitSet>> byValue = new ArrayList<>();
+    private final BitSet[] ruleTo; // destinations per rule
+    private final BitSet fallback = new BitSet();
+
+    // destinations: names, with the default one first
+    public Router(List<String> destinations, List<RoutingProperties.Rule> rules) {
+        this.destinations = List.copyOf(destinations);
+        this.rules = rules.size();
+        this.ruleTo = new BitSet[rules.size()];
+        fallback.set(0);
+        Map<String, Integer> index = new HashMap<>();
+        for (int d = 0; d < destinations.size(); d++) index.put(destinations.get(d), d);
+
+        for (int a = 0; a < ATTRIBUTES; a++) {
+            unconstrained[a] = new BitSet();
+            byValue.add(new HashMap<>());
+        }
+        for (int r = 0; r < rules.size(); r++) {
+            RoutingProperties.Rule rule = rules.get(r);
+            compile(r, SOURCE, rule.sources());
+            compile(r, PROJECT, rule.projects());
+            compile(r, TAG, rule.tags());
+            compile(r, SEARCH, rule.savedSearches());
+            compile(r, PRIORITY, rule.priorities());
+            if (rule.to() == null || rule.to().isEmpty())
+                throw new IllegalArgumentException("routing.rules[" + r + "] has no destinations (to)");
+            ruleTo[r] = new BitSet();
+            for (String name : rule.to()) {
+                Integer d = index.get(name.trim());
+                if (d == null) throw new IllegalArgumentException("routing.rules[" + r + "] sends to unknown destination " + name);
+                ruleTo[r].set(d);
+            }
+        }
+    }
+
+    private void compile(int rule, int attribute, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            unconstrained[attribute].set(rule);
+            return;
+        }
+        for (String v : values) byValue.get(attribute).computeIfAbsent(key(v), k -> new BitSet()).set(rule);
+    }
+
+    public int size() { return destinations.size(); }
+
+    public String destination(int i) { return destinations.get(i); }
+
+    // Destinations for a notification from source; meta is null when it couldn't be decoded, then
+    // only rules that need nothing but the source can match
+    public BitSet route(String source, YtMetadata meta) {
+        if (rules == 0) return (BitSet) fallback.clone();
+        BitSet matched = new BitSet(rules);
+        matched.set(0, rules);
+        matched.and(match(SOURCE, source));
+        if (meta != null) {
+            matched.and(match(PROJECT, project(meta.issue().id())));
+            matched.and(match(TAG, meta.reason() == null ? null : meta.reason().tags()));
+            matched.and(match(SEARCH, meta.reason() == null ? null : meta.reason().savedSearches()));
+            matched.and(match(PRIORITY, meta.field("Priority")));
+        } else {
+            for (int a = PROJECT; a < ATTRIBUTES; a++) matched.and(unconstrained[a]);
+        }
+        if (matched.isEmpty()) return (BitSet) fallback.clone();
+        BitSet to = new BitSet(destinations.size());
+        for (int r = matched.nextSetBit(0); r >= 0; r = matched.nextSetBit(r + 1)) to.or(ruleTo[r]);
+        return to;
+    }
+
+    private BitSet match(int attribute, String value) {
+        return match(attribute, value == null ? List.of() : List.of(value));
+    }
+
+    private BitSet match(int attribute, List<String> values) {
+        BitSet m = (BitSet) unconstrained[attribute].clone();
+        if (values == null) return m;
+        for (String v : values) {
+            BitSet hit = v == null ? null : byValue.get(attribute).get(key(v));
+            if (hit != null) m.or(hit);
+        }
+        return m;
+    }
+
+    // DEMO-12 -> DEMO
+    static String project(String issueId) {
+        int dash = issueId.lastIndexOf('-');
+        return dash > 0 ? issueId.substring(0, dash) : null;
+    }
+
+    private static String key(String value) { return value.trim().toLowerCase(Locale.ROOT); }
+}
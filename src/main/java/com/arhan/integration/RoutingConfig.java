@@ -0,0 +1,53 @@
+package com.arhan.integration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// The destinations: discord.webhookUrl as "default" with its queue in outbox.dir, then every
+// routing.destinations entry with its own sender and its queue next to it (<outbox.dir>-<name>),
+// plus <outbox.dir>.journal for batches that go to several. In cluster mode the queues are shared
+// and only opened once this replica leads
+@Configuration
+@EnableConfigurationProperties(RoutingProperties.class)
+public class RoutingConfig {
+
+    @Bean(destroyMethod = "close")
+    Destinations destinations(RoutingProperties routing, WebhookSender sender, WebClient http, BlockingHttp blockingHttp,
+                              Execution execution,
+                              @Value("${discord.maxRetries:5}") int maxRetries,
+                              @Value("${discord.backoffMillis:500}") long backoffMillis,
+                              @Value("${pipeline.lanes:4}") int lanes,
+                              @Value("${pipeline.lingerMillis:50}") long lingerMillis,
+                              @Value("${outbox.dir:${state.dir:${user.home}}/.yt_outbox}") String outboxDir,
+                              @Value("${outbox.segmentBytes:8388608}") long segmentBytes,
+                              @Value("${cluster.enabled:false}") boolean clustered) {
+        Path dir = Paths.get(outboxDir);
+        List<String> names = new ArrayList<>(List.of(Router.DEFAULT));
+        List<Outbox> outboxes = new ArrayList<>();
+        outboxes.add(outbox(Router.DEFAULT, sender, dir, lanes, segmentBytes, lingerMillis, execution, clustered));
+        for (RoutingProperties.Destination d : routing.destinations()) {
+            String name = SourcePollers.checkName(d.name(), names, "routing.destinations");
+            names.add(name);
+            WebhookSender own = new WebhookSender(new DiscordClient(http, blockingHttp, d.webhookUrl()), maxRetries, backoffMillis);
+            outboxes.add(outbox(name, own, dir.resolveSibling(dir.getFileName() + "-" + name), lanes, segmentBytes,
+                    lingerMillis, execution, clustered));
+        }
+        return new Destinations(outboxes, new Router(names, routing.rules()),
+                dir.resolveSibling(dir.getFileName() + ".journal"));
+    }
+
+    private static Outbox outbox(String name, WebhookSender sender, Path dir, int lanes, long segmentBytes,
+                                 long lingerMillis, Execution execution, boolean clustered) {
+        Outbox outbox = new Outbox(name, sender, () -> new OutboundQueue(dir, lanes, segmentBytes), lingerMillis, execution);
+        if (!clustered) outbox.start();
+        return outbox;
+    }
+}
@@ -0,0 +1,28 @@
+package com.arhan.integration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+// routing.* : YouTrack instances polled next to the main one (youtrack.*, source "default"), Discord
+// webhooks next to the main one (discord.webhookUrl, destination "default") and the rules that
+// pick destinations. Lists are indexed properties, e.g. routing.rules[0].projects=DEMO,WEB
+@ConfigurationProperties("routing")
+public record RoutingProperties(List<Source> sources, List<Destination> destinations, List<Rule> rules) {
+
+    public RoutingProperties {
+        sources = sources == null ? List.of() : sources;
+        destinations = destinations == null ? List.of() : destinations;
+        rules = rules == null ? List.of() : rules;
+    }
+
+    public record Source(String name, String baseUrl, String token) {}
+
+    public record Destination(String name, String webhookUrl) {}
+
+    // A notification matches when every attribute the rule lists matches one of its values (an
+    // attribute left out matches anything) and then goes to all the destinations in to. Values are
+    // compared ignoring case; priority is the value a change set the Priority field to
+    public record Rule(List<String> sources, List<String> projects, List<String> tags, List<String> savedSearches,
+                       List<String> priorities, List<String> to) {}
+}
@@ -0,0 +1,233 @@
+package com.arhan.integration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Dedup state for delivered notifications: an append-only log on disk ("id<TAB>timestamp" per line,
+// the last line for an id wins) and a bounded in-memory index. Ids older than the poll watermark
+// are evicted, since the poller never looks below it, and the log is compacted once it is mostly
+// evicted entries. Past maxIds the oldest timestamps go first, a sixteenth of maxIds at a time.
+// A crash can at worst tear the last line, which is ignored on load (delivery stays at-least-once)
+public class SeenStore implements Closeable {
+    private final Path log;
+    private final Path tmp;
+    private final int maxIds;
+    // The index: an open-addressing table (linear probing, at most half full) of id -> timestamp in
+    // two parallel arrays, so an id costs a slot in each rather than a map entry and a boxed Long
+    private String[] keys = new String[16];
+    private long[] stamps = new long[16];
+    private int size;
+    private final StringBuilder pending = new StringBuilder();
+    private FileChannel out;
+    private long logLines;
+    private long oldest = Long.MAX_VALUE; // no entry is older than this
+
+    public SeenStore(Path log, int maxIds) throws IOException {
+        this.log = log;
+        this.tmp = log.resolveSibling(log.getFileName() + ".tmp");
+        this.maxIds = maxIds;
+        Files.deleteIfExists(tmp); // leftover from a compaction that didn't finish, the log itself is intact
+        long valid = Files.exists(log) ? load() : 0;
+        out = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (out.size() > valid) out.truncate(valid); // drop a torn last line so new appends start clean
+    }
+
+    // One-off import of the old ~/.yt_seen_ids.txt (one id per line, no timestamps). The ids are
+    // stamped with the current watermark so they live until the poller has moved past it
+    public synchronized void importLegacy(Path legacy, long watermarkTs) throws IOException {
+        if (!Files.exists(legacy) || logLines > 0) return;
+        for (String id : Files.readAllLines(legacy)) if (!id.isBlank()) add(id, watermarkTs);
+        flush();
+    }
+
+    public synchronized boolean contains(String id) {
+        return keys[slot(id)] != null;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Buffered until the next flush(). An id seen again takes the new timestamp
+    public synchronized void add(String id, long timestamp) {
+        if (!put(id, timestamp)) return;
+        pending.append(id).append('\t').append(timestamp).append('\n');
+        logLines++;
+        trimToMax();
+    }
+
+    // Everything strictly older than the watermark is filtered by timestamp before it reaches us.
+    // Insertion order isn't timestamp order (pushed changes are stamped on arrival, coalesced ones
+    // when their window closes), so every entry is compared; oldest skips the walk when nothing
+    // can be below the watermark
+    public synchronized void evictBefore(long watermarkTs) {
+        if (watermarkTs <= oldest) return;
+        removeOlder(watermarkTs, 0);
+    }
+
+    // Appends and fsyncs what was added since the last flush; compacts when the log has
+    // grown to more than twice the live entries
+    public synchronized void flush() throws IOException {
+        if (!pending.isEmpty()) {
+            ByteBuffer buf = StandardCharsets.UTF_8.encode(pending.toString());
+            while (buf.hasRemaining()) out.write(buf);
+            out.force(false);
+            pending.setLength(0);
+        }
+        if (logLines > 2L * size + 1024) compact();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+    // Writes the live entries to a temp file and atomically swaps it in
+    private void compact() throws IOException {
+        StringBuilder sb = new StringBuilder(size * 24);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) sb.append(keys[i]).append('\t').append(stamps[i]).append('\n');
+        }
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = StandardCharsets.UTF_8.encode(sb.toString());
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(false);
+        }
+        out.close();
+        Files.move(tmp, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        out = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logLines = size;
+    }
+
+    // Returns the length of the log up to its last complete line
+    private long load() throws IOException {
+        byte[] bytes = Files.readAllBytes(log);
+        int valid = bytes.length;
+        while (valid > 0 && bytes[valid - 1] != '\n') valid--; // a trailing line without '\n' is a torn write
+        String text = new String(bytes, 0, valid, StandardCharsets.UTF_8);
+        int start = 0;
+        int nl;
+        while ((nl = text.indexOf('\n', start)) >= 0) {
+            int tab = text.indexOf('\t', start);
+            if (tab > start && tab < nl) {
+                try {
+                    long ts = Long.parseLong(text, tab + 1, nl, 10);
+                    put(text.substring(start, tab), ts);
+                    logLines++;
+                } catch (NumberFormatException ignore) {}
+            }
+            start = nl + 1;
+        }
+        trimToMax();
+        return valid;
+    }
+
+    // Inserts or updates; false if the id already had this timestamp
+    private boolean put(String id, long timestamp) {
+        int i = slot(id);
+        if (keys[i] != null) {
+            if (stamps[i] == timestamp) return false;
+        } else {
+            if (2 * (size + 1) > keys.length) {
+                resize(keys.length * 2);
+                i = slot(id);
+            }
+            keys[i] = id;
+            size++;
+        }
+        stamps[i] = timestamp;
+        oldest = Math.min(oldest, timestamp); // a re-put to a later time leaves oldest low, which only costs a walk
+        return true;
+    }
+
+    // Over maxIds: drops the oldest timestamps down to maxIds less a sixteenth, so the sort behind
+    // it is paid once per maxIds / 16 adds
+    private void trimToMax() {
+        if (size <= maxIds) return;
+        int remove = size - (maxIds - maxIds / 16);
+        long[] sorted = new long[size];
+        for (int i = 0, n = 0; i < keys.length; i++) if (keys[i] != null) sorted[n++] = stamps[i];
+        Arrays.sort(sorted);
+        long cutoff = sorted[remove - 1];
+        int below = 0;
+        while (sorted[below] < cutoff) below++;
+        removeOlder(cutoff, remove - below);
+    }
+
+    // Removes every entry older than cutoff and the first `tied` ones stamped exactly cutoff, and
+    // recomputes oldest. Walks the table once from just past an empty slot, so no cluster wraps
+    // around the walk and the entries deleteAt shifts back are all still ahead of it
+    private void removeOlder(long cutoff, int tied) {
+        int mask = keys.length - 1;
+        int start = 0;
+        while (keys[start] != null) start++;
+        long min = Long.MAX_VALUE;
+        int i = (start + 1) & mask;
+        for (int left = mask; left > 0; ) {
+            if (keys[i] != null) {
+                long ts = stamps[i];
+                if (ts < cutoff || (ts == cutoff && tied > 0)) {
+                    if (ts == cutoff) tied--;
+                    deleteAt(i);
+                    continue; // look at whatever moved into i
+                }
+                min = Math.min(min, ts);
+            }
+            i = (i + 1) & mask;
+            left--;
+        }
+        oldest = min;
+    }
+
+    // Backward-shift deletion: later entries of the cluster move into the hole when their home
+    // slot allows, so lookups never need tombstones
+    private void deleteAt(int hole) {
+        int mask = keys.length - 1;
+        for (int j = (hole + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+            int home = home(keys[j], mask);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                stamps[hole] = stamps[j];
+                hole = j;
+            }
+        }
+        keys[hole] = null;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        long[] oldStamps = stamps;
+        keys = new String[capacity];
+        stamps = new long[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int j = slot(oldKeys[i]);
+            keys[j] = oldKeys[i];
+            stamps[j] = oldStamps[i];
+        }
+    }
+
+    // The id's slot, or the empty slot where it would go
+    private int slot(String id) {
+        int mask = keys.length - 1;
+        int i = home(id, mask);
+        while (keys[i] != null && !keys[i].equals(id)) i = (i + 1) & mask;
+        return i;
+    }
+
+    private static int home(String id, int mask) {
+        int h = id.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -1,34 +1,61 @@
 package com.arhan.integration;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.commands.Command;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import reactor.core.publisher.Mono;
 
+import java.util.List;
+
+// /youtrack create | find | show. Issues are created through the IssueCreationQueue. Autocomplete
+// for find and show only reads the local IssueIndex, so suggestions come back well within Discord's
+// 3 second limit; find asks YouTrack only when the index has nothing, show always fetches the issue
 @Component
 public class SlashListener extends ListenerAdapter {
+    private static final int MAX_CHOICES = 25; // Discord's limit for autocomplete
+    private static final int FIND_RESULTS = 10;
 
     private final YouTrackService youtrack;
+    private final IssueIndex index;
+    private final IssueCreationQueue creations;
     private final String youtrackApiBase;
-    private final String projectId;
 
-    public SlashListener(YouTrackService youtrack,
-                         @Value("${youtrack.baseUrl}") String youtrackApiBase,
-                         @Value("${youtrack.projectId}") String projectId) {
+    public SlashListener(YouTrackService youtrack, IssueIndex index, IssueCreationQueue creations,
+                         @Value("${youtrack.baseUrl}") String youtrackApiBase) {
         this.youtrack = youtrack;
+        this.index = index;
+        this.creations = creations;
         this.youtrackApiBase = youtrackApiBase;
-        this.projectId = projectId; // "DEMO" annotation of issue
     }
 
-    // We will use JSON node to structure our incoming text
-    // Includes try/catch error handling for empty summaries
     @Override
     public void onSlashCommandInteraction(@NotNull SlashCommandInteractionEvent event) {
+        if (!event.getName().equals("youtrack") || event.getSubcommandName() == null) return;
+        switch (event.getSubcommandName()) {
+            case "create" -> create(event);
+            case "find" -> find(event);
+            case "show" -> show(event);
+            default -> event.reply("Unknown subcommand.").setEphemeral(true).queue();
+        }
+    }
+
+    @Override
+    public void onCommandAutoCompleteInteraction(@NotNull CommandAutoCompleteInteractionEvent event) {
         if (!event.getName().equals("youtrack")) return;
+        List<Command.Choice> choices = index.search(event.getFocusedOption().getValue(), MAX_CHOICES).stream()
+                .map(i -> new Command.Choice(truncate(label(i), 100), i.id()))
+                .toList();
+        event.replyChoices(choices).queue();
+    }
 
+    // Goes through the IssueCreationQueue; the deferred reply shows the place in line until the
+    // issue exists, and a double click (or the same summary again) gets the same issue
+    private void create(SlashCommandInteractionEvent event) {
         var opt = event.getOption("summary");
         if (opt == null || opt.getAsString().isBlank()) {
             event.reply("Please provide a non-empty summary.").setEphemeral(true).queue();
@@ -37,19 +64,113 @@ public class SlashListener extends ListenerAdapter {
 
         String summary = opt.getAsString();
         event.deferReply(true).queue();
+        InteractionHook hook = event.getHook();
+
+        IssueCreationQueue.Submission submitted = creations.submit(event.getUser().getId(), summary, new IssueCreationQueue.Feedback() {
+            @Override
+            public void queued(int position) {
+                hook.editOriginal(position == 0 ? "Creating issue…" : "Queued, number " + position + " in line…").queue();
+            }
+
+            @Override
+            public void created(JsonNode node, boolean first) {
+                String idReadable = node.path("idReadable").asText("NEW");
+                String link = "[" + summary + "](" + issueUrl(idReadable) + ")";
+                if (!first) {
+                    hook.editOriginal("Already created: **" + idReadable + "**\n" + link).queue();
+                    return;
+                }
+                index.put(new IssueIndex.Issue(idReadable, summary, null, System.currentTimeMillis()));
+                hook.editOriginal("Created " + idReadable + ".").queue();
+                hook.sendMessage("**Created:** " + idReadable + "\n" + link).setEphemeral(false).queue();
+            }
 
-        Mono<JsonNode> created = youtrack.createIssue(summary, projectId);
+            @Override
+            public void failed(Throwable err) {
+                hook.editOriginal("Failed to create issue: " + err.getMessage()).queue();
+            }
+        });
+        if (submitted == IssueCreationQueue.Submission.REJECTED) {
+            hook.editOriginal("Too many issues are being created right now, please try again in a minute.").queue();
+        }
+    }
+
+    private void find(SlashCommandInteractionEvent event) {
+        var opt = event.getOption("query");
+        String query = opt == null ? "" : opt.getAsString();
+        List<IssueIndex.Issue> hits = index.search(query, FIND_RESULTS);
+        if (!hits.isEmpty()) {
+            event.reply(list(hits)).setEphemeral(true).queue();
+            return;
+        }
+        event.deferReply(true).queue();
+        youtrack.searchIssues(query, FIND_RESULTS).subscribe(
+                found -> {
+                    index.putAll(found);
+                    event.getHook().sendMessage(found.isEmpty() ? "No issues match \"" + query + "\"." : list(found))
+                            .setEphemeral(true).queue();
+                },
+                err -> event.getHook().sendMessage("Failed to search issues: " + err.getMessage())
+                        .setEphemeral(true).queue());
+    }
 
-        created.subscribe(
+    private void show(SlashCommandInteractionEvent event) {
+        var opt = event.getOption("issue");
+        if (opt == null || opt.getAsString().isBlank()) {
+            event.reply("Please provide an issue id.").setEphemeral(true).queue();
+            return;
+        }
+        // Free text picks the best match from the index
+        String id = opt.getAsString().trim();
+        if (index.get(id) == null) {
+            List<IssueIndex.Issue> hits = index.search(id, 1);
+            if (!hits.isEmpty()) id = hits.get(0).id();
+        }
+        String wanted = id;
+        event.deferReply(true).queue();
+        youtrack.fetchIssue(wanted).subscribe(
                 node -> {
-                    String idReadable = node.path("idReadable").asText("NEW");
-                    String youtrackWebBase = youtrackApiBase.replaceAll("/api/?$", "");
-                    String url = (youtrackWebBase.endsWith("/") ? youtrackWebBase : youtrackWebBase + "/") + "issue/" + idReadable;
-                    event.getHook().sendMessage("**Created:** " + idReadable + "\n[" + summary + "](" + url + ")")
-                            .setEphemeral(false).queue();
+                    IssueIndex.Issue issue = YouTrackService.issue(node);
+                    index.put(issue);
+                    event.getHook().sendMessage(details(issue, node.path("description").asText(""))).setEphemeral(true).queue();
                 },
-                err -> event.getHook().sendMessage("Failed to create issue: " + err.getMessage())
-                        .setEphemeral(true).queue()
-        );
+                err -> {
+                    IssueIndex.Issue cached = index.get(wanted);
+                    String msg = cached != null
+                            ? details(cached, "") + "\n_(from the local index, YouTrack didn't answer: " + err.getMessage() + ")_"
+                            : "Couldn't load issue " + wanted + ": " + err.getMessage();
+                    event.getHook().sendMessage(truncate(msg, 2000)).setEphemeral(true).queue();
+                });
+    }
+
+    private String list(List<IssueIndex.Issue> issues) {
+        StringBuilder sb = new StringBuilder();
+        for (IssueIndex.Issue i : issues) {
+            sb.append("[").append(i.id()).append("](").append(issueUrl(i.id())).append(") ").append(i.summary());
+            if (i.state() != null) sb.append(" _(").append(i.state()).append(")_");
+            sb.append('\n');
+        }
+        return truncate(sb.toString(), 2000);
+    }
+
+    private String details(IssueIndex.Issue i, String description) {
+        StringBuilder sb = new StringBuilder("**").append(i.id()).append("** ").append(i.summary()).append('\n');
+        if (i.state() != null) sb.append("**State:** ").append(i.state()).append('\n');
+        if (!description.isBlank()) sb.append(truncate(description, 1000)).append('\n');
+        sb.append(issueUrl(i.id()));
+        return truncate(sb.toString(), 2000);
+    }
+
+    private static String label(IssueIndex.Issue i) {
+        return i.id() + " " + i.summary() + (i.state() == null ? "" : " · " + i.state());
+    }
+
+    private String issueUrl(String idReadable) {
+        String youtrackWebBase = youtrackApiBase.replaceAll("/api/?$", "");
+        return (youtrackWebBase.endsWith("/") ? youtrackWebBase : youtrackWebBase + "/") + "issue/" + idReadable;
+    }
+
+    private static String truncate(String s, int max) {
+        return s.length() <= max ? s : s.substring(0, max - 1) + "…";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package com.arhan.integration;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// The routing.sources YouTrack instances, polled next to the main one (NotificationScheduler) with
+// the same settings. Each has its own client, pipeline (for links into that instance) and seen
+// state, and they all feed the shared destinations. Push (/hooks/youtrack) is for the main one only
+@Component
+public class SourcePollers implements Leadership.Task {
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final List<NotificationPipeline> pipelines = new ArrayList<>();
+    private final List<NotificationScheduler> schedulers = new ArrayList<>();
+
+    public SourcePollers(RoutingProperties routing, Destinations destinations, Execution execution,
+                         NotificationScheduler main, Config.HttpSettings http, LoopResources httpLoops,
+                         ConnectionProvider httpPool, BlockingHttp blockingHttp, @Value("${pipeline.concurrency:0}") int concurrency) {
+        List<String> names = new ArrayList<>(List.of(Router.DEFAULT));
+        for (RoutingProperties.Source s : routing.sources()) {
+            String name = checkName(s.name(), names, "routing.sources");
+            names.add(name);
+            YouTrackService youtrack = new YouTrackService(Config.youtrack(http, httpLoops, httpPool, s.baseUrl(), s.token()),
+                    Config.youtrack(blockingHttp, s.baseUrl(), s.token()));
+            NotificationPipeline pipeline = new NotificationPipeline(name, s.baseUrl(), concurrency, destinations, execution, false);
+            pipelines.add(pipeline);
+            schedulers.add(main.forSource(youtrack, pipeline));
+        }
+    }
+
+    // Names end up in file names and thread names
+    static String checkName(String name, List<String> taken, String property) {
+        if (name == null || !NAME.matcher(name).matches())
+            throw new IllegalArgumentException(property + " needs a name of letters, digits, - and _, got " + name);
+        if (taken.contains(name)) throw new IllegalArgumentException(property + " has " + name + " twice");
+        return name;
+    }
+
+    @Override
+    public void start() throws IOException {
+        for (NotificationScheduler s : schedulers) s.start();
+    }
+
+    @Override
+    public void stop() throws IOException {
+        for (NotificationScheduler s : schedulers) s.stop();
+    }
+
+    @PreDestroy
+    public void close() throws Exception {
+        for (NotificationScheduler s : schedulers) s.close();
+        for (NotificationPipeline p : pipelines) p.close();
+    }
+}
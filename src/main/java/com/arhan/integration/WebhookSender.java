@@ -0,0 +1,299 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Delivery engine in front of DiscordClient: packs embeds into as few webhook posts as Discord
+// allows, waits out each webhook's rate limit bucket instead of running into 429s, and retries
+// 429s (after retry_after) and transient failures (with jittered exponential backoff)
+@Service
+public class WebhookSender {
+    // Discord limits for a single webhook message
+    static final int MAX_EMBEDS = 10;
+    static final int MAX_TOTAL_CHARS = 6000;
+    static final int MAX_DESCRIPTION = 4096;
+    private static final int MAX_RATE_LIMIT_RETRIES = 50;
+
+    private static final ObjectMapper OM = new ObjectMapper();
+
+    private final DiscordClient discord;
+    private final int maxRetries;
+    private final Duration backoff;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public WebhookSender(DiscordClient discord,
+                         @Value("${discord.maxRetries:5}") int maxRetries,
+                         @Value("${discord.backoffMillis:500}") long backoffMillis) {
+        this(discord, maxRetries, Duration.ofMillis(backoffMillis));
+    }
+
+    WebhookSender(DiscordClient discord, int maxRetries, Duration backoff) {
+        this.discord = discord;
+        this.maxRetries = maxRetries;
+        this.backoff = backoff;
+    }
+
+    // Groups items into webhook-sized batches (by embed count and total characters), keeping order
+    public static <T> List<List<T>> pack(List<T> items, Function<T, DiscordClient.Embed> embedOf) {
+        List<List<T>> batches = new ArrayList<>();
+        List<T> current = new ArrayList<>();
+        int chars = 0;
+        for (T item : items) {
+            int size = length(fit(embedOf.apply(item)));
+            if (!current.isEmpty() && (current.size() == MAX_EMBEDS || chars + size > MAX_TOTAL_CHARS)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                chars = 0;
+            }
+            current.add(item);
+            chars += size;
+        }
+        if (!current.isEmpty()) batches.add(current);
+        return batches;
+    }
+
+    public Mono<Void> send(List<DiscordClient.Embed> batch) {
+        return send(discord.webhook(), batch);
+    }
+
+    // Sends one packed batch, waiting for the webhook's bucket first and retrying as needed.
+    // 429s are waited out and don't count towards maxRetries (only towards a hard cap)
+    public Mono<Void> send(String webhook, List<DiscordClient.Embed> batch) {
+        List<DiscordClient.Embed> embeds = batch.stream().map(WebhookSender::fit).toList();
+        Bucket bucket = buckets.computeIfAbsent(webhook, k -> new Bucket());
+        return Mono.defer(() -> {
+            AtomicInteger failures = new AtomicInteger();
+            AtomicInteger rateLimits = new AtomicInteger();
+            return Mono.defer(() -> acquire(bucket)
+                            .flatMap(window -> discord.post(webhook, embeds)
+                                    .doOnError(e -> bucket.release(window))
+                                    .doOnCancel(() -> bucket.release(window))
+                                    .map(resp -> {
+                                        bucket.update(window, resp.headers());
+                                        return resp;
+                                    }))
+                            .flatMap(resp -> {
+                                if (resp.status() == 429) return Mono.error(new RateLimited(retryAfter(resp)));
+                                if (resp.status() >= 500) return Mono.error(new Transient("Discord returned " + resp.status()));
+                                if (resp.status() >= 400) return Mono.error(new Rejected(resp.status(), resp.body()));
+                                return Mono.<Void>empty();
+                            }))
+                    .retryWhen(Retry.from(signals -> signals.concatMap(s -> {
+                        Throwable err = s.failure();
+                        if (err instanceof RateLimited rl && rateLimits.incrementAndGet() <= MAX_RATE_LIMIT_RETRIES) {
+                            bucket.pause(rl.retryAfter);
+                            return Mono.just(s.totalRetries());
+                        }
+                        if ((err instanceof Transient || err instanceof WebClientRequestException)
+                                && failures.get() < maxRetries) {
+                            return Mono.delay(jittered(failures.getAndIncrement())).thenReturn(s.totalRetries());
+                        }
+                        return Mono.error(err);
+                    })));
+        });
+    }
+
+    public void send(List<DiscordClient.Embed> batch, Pause pause) throws IOException, InterruptedException {
+        send(discord.webhook(), batch, pause);
+    }
+
+    // send() as plain blocking code for the sequential loops: the same bucket, retries and caps,
+    // with the waits in pause. Throws what the Mono would have failed with (connection errors and
+    // timeouts as IOExceptions)
+    public void send(String webhook, List<DiscordClient.Embed> batch, Pause pause) throws IOException, InterruptedException {
+        List<DiscordClient.Embed> embeds = batch.stream().map(WebhookSender::fit).toList();
+        Bucket bucket = buckets.computeIfAbsent(webhook, k -> new Bucket());
+        int failures = 0;
+        int rateLimits = 0;
+        while (true) {
+            Bucket.Permit permit;
+            while (!(permit = bucket.tryAcquire()).delay().isZero()) pause.sleep(permit.delay());
+            DiscordClient.WebhookResponse resp;
+            try {
+                resp = discord.post(webhook, embeds, pause);
+            } catch (IOException e) {
+                bucket.release(permit.window());
+                if (failures >= maxRetries) throw e;
+                pause.sleep(jittered(failures++));
+                continue;
+            } catch (InterruptedException | RuntimeException e) {
+                bucket.release(permit.window());
+                throw e;
+            }
+            bucket.update(permit.window(), resp.headers());
+            if (resp.status() == 429) {
+                RateLimited rl = new RateLimited(retryAfter(resp));
+                if (++rateLimits > MAX_RATE_LIMIT_RETRIES) throw rl;
+                bucket.pause(rl.retryAfter);
+            } else if (resp.status() >= 500) {
+                if (failures >= maxRetries) throw new Transient("Discord returned " + resp.status());
+                pause.sleep(jittered(failures++));
+            } else if (resp.status() >= 400) {
+                throw new Rejected(resp.status(), resp.body());
+            } else {
+                return;
+            }
+        }
+    }
+
+    // Waits until the bucket has a request left and takes it; emits the window it was taken in
+    private static Mono<Long> acquire(Bucket bucket) {
+        return Mono.defer(() -> {
+            Bucket.Permit permit = bucket.tryAcquire();
+            return permit.delay().isZero() ? Mono.just(permit.window()) : Mono.delay(permit.delay()).then(acquire(bucket));
+        });
+    }
+
+    // backoff * 2^attempt, scaled by a random factor in [0.5, 1.5) so retries don't line up
+    private Duration jittered(long attempt) {
+        long base = backoff.toMillis() << Math.min(attempt, 10);
+        return Duration.ofMillis((long) (base * (0.5 + ThreadLocalRandom.current().nextDouble())));
+    }
+
+    private static Duration retryAfter(DiscordClient.WebhookResponse resp) {
+        try {
+            double seconds = OM.readTree(resp.body()).path("retry_after").asDouble(-1);
+            if (seconds >= 0) return Duration.ofMillis((long) Math.ceil(seconds * 1000));
+        } catch (Exception ignore) {}
+        String header = resp.headers().getFirst("Retry-After");
+        if (header != null) {
+            try { return Duration.ofMillis((long) Math.ceil(Double.parseDouble(header) * 1000)); }
+            catch (NumberFormatException ignore) {}
+        }
+        return Duration.ofSeconds(1);
+    }
+
+    // Discord rejects descriptions over 4096 characters
+    private static DiscordClient.Embed fit(DiscordClient.Embed e) {
+        String d = e.description();
+        if (d.length() <= MAX_DESCRIPTION) return e;
+        return new DiscordClient.Embed(e.title(), d.substring(0, MAX_DESCRIPTION - 1) + "…");
+    }
+
+    private static int length(DiscordClient.Embed e) {
+        return e.title().length() + e.description().length();
+    }
+
+    // Rate limit state of one webhook, from the X-RateLimit-* headers of its responses. Every
+    // request takes one from remaining, also the first one after a reset, and stays in flight
+    // until its response is in. A response only tells us about its own window: Discord's
+    // Remaining doesn't count our requests still in flight, and one from before a reset says
+    // nothing about the window we're in now
+    static final class Bucket {
+        private static final long POLL_MILLIS = 50;
+
+        record Permit(long window, Duration delay) {}
+
+        private int limit = 1;             // one request at a time until Discord tells us its limit
+        private int remaining;
+        private long resetAt;              // end of the current window
+        private long windowMillis = 1000;  // how long a window lasted, for the guess at the next one's end
+        private long window;               // counts windows
+        private int inFlight;              // taken in this window, not answered yet
+        private boolean heard;             // a response from this window came in
+        private boolean limited = true;    // false once a response came without X-RateLimit-* headers
+
+        synchronized Permit tryAcquire() {
+            if (!limited) return new Permit(window, Duration.ZERO);
+            long now = System.currentTimeMillis();
+            if (now >= resetAt) {
+                // A new window; its real end comes with the first response
+                window++;
+                remaining = limit;
+                inFlight = 0;
+                heard = false;
+                resetAt = now + windowMillis;
+            }
+            if (remaining > 0) {
+                remaining--;
+                inFlight++;
+                return new Permit(window, Duration.ZERO);
+            }
+            // An answer still on its way may tell us the window is larger or over sooner than we think
+            long wait = resetAt - now;
+            return new Permit(-1, Duration.ofMillis(inFlight > 0 ? Math.min(wait, POLL_MILLIS) : wait));
+        }
+
+        // A request that got no response
+        synchronized void release(long permitWindow) {
+            if (permitWindow == window && inFlight > 0) inFlight--;
+        }
+
+        synchronized void update(long permitWindow, HttpHeaders headers) {
+            if (permitWindow != window) return; // from an earlier window
+            if (inFlight > 0) inFlight--;
+            String lim = headers.getFirst("X-RateLimit-Limit");
+            String rem = headers.getFirst("X-RateLimit-Remaining");
+            String after = headers.getFirst("X-RateLimit-Reset-After");
+            limited = rem != null || after != null;
+            try {
+                if (lim != null) limit = Math.max(1, Integer.parseInt(lim));
+                if (rem == null || after == null) return;
+                int left = Integer.parseInt(rem);
+                if (lim == null) limit = Math.max(limit, left + 1);
+                long now = System.currentTimeMillis();
+                long reset = now + (long) Math.ceil(Double.parseDouble(after) * 1000);
+                windowMillis = Math.max(windowMillis, reset - now);
+                // What Discord has left minus what it hasn't seen yet from us
+                int known = Math.max(0, left - inFlight);
+                if (!heard || reset > resetAt + POLL_MILLIS) {
+                    // The first word on this window, or Discord's started after we thought it did
+                    remaining = known;
+                } else {
+                    // Answers can come out of order, so a later one never gives back requests
+                    remaining = Math.min(remaining, known);
+                }
+                heard = true;
+                resetAt = reset;
+            } catch (NumberFormatException ignore) {}
+        }
+
+        synchronized void pause(Duration d) {
+            limited = true; // a 429 says there is a limit, headers or not
+            remaining = 0;
+            resetAt = Math.max(resetAt, System.currentTimeMillis() + d.toMillis());
+        }
+    }
+
+    static final class RateLimited extends RuntimeException {
+        final Duration retryAfter;
+        RateLimited(Duration retryAfter) {
+            super("Rate limited by Discord, retry after " + retryAfter.toMillis() + "ms");
+            this.retryAfter = retryAfter;
+        }
+    }
+
+    static final class Transient extends RuntimeException {
+        Transient(String message) { super(message); }
+    }
+
+    // A 4xx other than 429. Not retried here: whether to drop the message or keep it is up to the caller
+    static final class Rejected extends RuntimeException {
+        final int status;
+        Rejected(int status, String body) {
+            super("Discord rejected webhook post: " + status + " " + body);
+            this.status = status;
+        }
+
+        // 400 and 413: the message itself is bad (too long, malformed embed) and will never be taken.
+        // 401/403/404 and the rest are about the webhook, which someone can fix
+        boolean badMessage() { return status == 400 || status == 413; }
+    }
+}
@@ -2,54 +2,248 @@ package com.arhan.integration;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import java.util.Base64;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 
 @Service
 public class YouTrackService {
     private final WebClient youtrackClient;
     private static final ObjectMapper OM = new ObjectMapper();
+    // Shared by everything decoding notification payloads; 8 MiB cap on decompressed metadata/content
+    public static final B64GzipDecoder DECODER =
+            new B64GzipDecoder(8 * 1024 * 1024, Runtime.getRuntime().availableProcessors() * 2);
 
-    public YouTrackService(WebClient youtrackClient) { this.youtrackClient = youtrackClient; }
+    // For the sequential loops (null when built without one: reactive only)
+    private final BlockingHttp blocking;
+
+    @Autowired
+    public YouTrackService(WebClient youtrackClient, BlockingHttp blockingHttp,
+                           @Value("${youtrack.baseUrl}") String base,
+                           @Value("${youtrack.token}") String token) {
+        this(youtrackClient, Config.youtrack(blockingHttp, base, token));
+    }
+
+    public YouTrackService(WebClient youtrackClient, BlockingHttp blocking) {
+        this.youtrackClient = youtrackClient;
+        this.blocking = blocking;
+    }
+
+    public YouTrackService(WebClient youtrackClient) { this(youtrackClient, null); }
 
     // Uses Mono to structure received notifications from YouTrack API endpoint
-    public Mono<List<JsonNode>> fetchNotifications() {
-        String fields = "id,content,metadata,notified,read,updated";
+    public Mono<List<Notification>> fetchNotifications() {
+        return timed(fetchPage(0, 50).map(Page::items));
+    }
+
+    // Incremental fetch: YouTrack lists notifications newest first, so we page with $skip until a page
+    // reaches something older than the watermark (or the list ends). Without a watermark (first run)
+    // only the first page is fetched, same as before.
+    // After maxPages the fetch stops with resumeSkip set to where it got to; the caller has to
+    // carry on from there (fromSkip) before it can move its watermark, or everything between the
+    // watermark and the last page is never fetched. New notifications only push older ones
+    // further down, so resuming at the same $skip can repeat but never skip one
+    public Mono<Fetch> fetchNotificationsSince(long sinceTs, int pageSize, int maxPages, int fromSkip) {
+        return timed(fetchPage(fromSkip, pageSize)
+                .expand(page -> {
+                    int next = nextSkip(page, sinceTs, pageSize);
+                    if (next < 0) return Mono.empty();
+                    if (atMaxPages(page, fromSkip, pageSize, maxPages)) return Mono.just(new Page(next, null));
+                    return fetchPage(next, pageSize);
+                })
+                .collectList()
+                .map(pages -> fetch(pages, maxPages)));
+    }
+
+    // The same fetch as blocking code for the sequential loops, all pages within timeout
+    public Fetch fetchNotificationsSince(long sinceTs, int pageSize, int maxPages, int fromSkip, Duration timeout,
+                                         Pause pause) throws IOException, InterruptedException {
+        if (blocking == null) throw new IllegalStateException("YouTrackService built without a blocking client");
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        try {
+            List<Page> pages = new ArrayList<>();
+            Page page = fetchPage(fromSkip, pageSize, deadline, pause);
+            pages.add(page);
+            for (int next; (next = nextSkip(page, sinceTs, pageSize)) >= 0; pages.add(page)) {
+                page = atMaxPages(page, fromSkip, pageSize, maxPages) ? new Page(next, null) : fetchPage(next, pageSize, deadline, pause);
+            }
+            Fetch fetch = fetch(pages, maxPages);
+            IntegrationMetrics.POLL_SUCCESS.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return fetch;
+        } catch (Exception e) {
+            IntegrationMetrics.POLL_ERROR.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    // The $skip of the page after this one, or -1 when this one reached the watermark or the end of the list
+    private static int nextSkip(Page page, long sinceTs, int pageSize) {
+        if (page.items() == null || sinceTs <= 0 || page.items().size() < pageSize || page.reaches(sinceTs)) return -1;
+        return page.skip() + pageSize;
+    }
+
+    private static boolean atMaxPages(Page page, int fromSkip, int pageSize, int maxPages) {
+        return (page.skip() - fromSkip) / pageSize + 1 >= maxPages;
+    }
+
+    private static Fetch fetch(List<Page> pages, int maxPages) {
+        // Pages shift while they're fetched (new notifications push older ones onto
+        // the next page), so the same notification can come twice
+        Set<String> ids = new HashSet<>();
+        List<Notification> all = new ArrayList<>();
+        int resumeSkip = 0;
+        for (Page page : pages) {
+            if (page.items() == null) {
+                resumeSkip = page.skip();
+                continue;
+            }
+            for (Notification n : page.items()) {
+                if (n.id() == null || ids.add(n.id())) all.add(n);
+            }
+        }
+        if (resumeSkip > 0) {
+            System.err.println("More than " + maxPages + " pages of new notifications, older ones are fetched from $skip="
+                    + resumeSkip + " next poll");
+        }
+        return new Fetch(all, resumeSkip);
+    }
+
+    // One incremental fetch; resumeSkip is 0 when it reached the watermark or the end of the list
+    public record Fetch(List<Notification> items, int resumeSkip) {
+        public boolean truncated() { return resumeSkip > 0; }
+    }
+
+    private static <T> Mono<T> timed(Mono<T> poll) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return poll.doOnSuccess(x -> IntegrationMetrics.POLL_SUCCESS.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnError(e -> IntegrationMetrics.POLL_ERROR.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    // poll.fetchTimeoutSeconds cancels instead of erroring
+                    .doOnCancel(() -> IntegrationMetrics.POLL_ERROR.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private static String pagePath(int skip, int top) {
+        return "/users/notifications?fields=id,content,metadata,notified,read,updated&$skip=" + skip + "&$top=" + top;
+    }
+
+    private Mono<Page> fetchPage(int skip, int top) {
         return youtrackClient.get()
-                .uri("/users/notifications?fields=" + fields + "&$top=50")
+                .uri(pagePath(skip, top))
                 .retrieve()
-                .bodyToMono(String.class)
-                .map(body -> {
-                    try { return Arrays.asList(OM.readValue(body, JsonNode[].class)); }
-                    catch (Exception e) { throw new RuntimeException(e); }
+                // Stream the body through the non-blocking parser buffer by buffer instead of
+                // collecting it into a String and then a JsonNode tree
+                .bodyToFlux(DataBuffer.class)
+                .collect(NotificationParser::new, (parser, buf) -> {
+                    try { parser.feed(buf); }
+                    finally { DataBufferUtils.release(buf); }
+                })
+                .map(parser -> {
+                    IntegrationMetrics.PAGE_BYTES.record(parser.bytes());
+                    return new Page(skip, parser.finish());
                 });
     }
 
+    // The whole page comes in before it is parsed; gzip (asked for in Config.youtrack) is
+    // decompressed on the way into the parser
+    private Page fetchPage(int skip, int top, long deadline, Pause pause) throws IOException, InterruptedException {
+        HttpResponse<byte[]> resp = blocking.get(pagePath(skip, top), Duration.ofNanos(deadline - System.nanoTime()), pause);
+        if (resp.statusCode() >= 400) throw new IOException("YouTrack returned " + resp.statusCode());
+        InputStream body = new ByteArrayInputStream(resp.body());
+        if (resp.headers().firstValue("Content-Encoding").filter("gzip"::equalsIgnoreCase).isPresent()) {
+            body = new GZIPInputStream(body);
+        }
+        NotificationParser parser = new NotificationParser();
+        byte[] chunk = new byte[8192];
+        for (int n; (n = body.read(chunk)) > 0; ) parser.feed(ByteBuffer.wrap(chunk, 0, n));
+        IntegrationMetrics.PAGE_BYTES.record(parser.bytes());
+        return new Page(skip, parser.finish());
+    }
+
+    // items is null for the marker of where a truncated fetch stopped
+    private record Page(int skip, List<Notification> items) {
+        boolean reaches(long sinceTs) {
+            for (Notification n : items) if (n.timestamp() < sinceTs) return true;
+            return false;
+        }
+    }
+
     // Decode the raw metadata output from base64
     public static String decodeB64Gzip(String b64) {
         if (b64 == null || b64.isBlank()) return "";
-        try (GZIPInputStream gis = new GZIPInputStream(
-                new ByteArrayInputStream(Base64.getDecoder().decode(b64)))) {
-            return new String(gis.readAllBytes(), StandardCharsets.UTF_8);
-        } catch (Exception e) { return ""; }
+        return decodeB64Gzip(b64.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    public static String decodeB64Gzip(byte[] b64) {
+        long start = System.nanoTime();
+        try { return DECODER.decodeToString(b64); }
+        finally { IntegrationMetrics.DECODE.record(System.nanoTime() - start, TimeUnit.NANOSECONDS); }
+    }
+
+    private static final String ISSUE_FIELDS = "idReadable,summary,description,updated,customFields(name,value(name))";
+
+    // Issues matching a YouTrack search query, e.g. "sort by: updated desc"
+    public Mono<List<IssueIndex.Issue>> searchIssues(String query, int top) {
+        return youtrackClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/issues")
+                        .queryParam("fields", "{fields}")
+                        .queryParam("query", "{query}")
+                        .queryParam("$top", top)
+                        .build(ISSUE_FIELDS, query))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(found -> {
+                    List<IssueIndex.Issue> out = new ArrayList<>();
+                    for (JsonNode n : found) out.add(issue(n));
+                    return out;
+                });
+    }
+
+    // One issue by its readable id (DEMO-12), description included
+    public Mono<JsonNode> fetchIssue(String idReadable) {
+        return youtrackClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/issues/{id}")
+                        .queryParam("fields", "{fields}")
+                        .build(idReadable, ISSUE_FIELDS))
+                .retrieve()
+                .bodyToMono(JsonNode.class);
+    }
+
+    static IssueIndex.Issue issue(JsonNode n) {
+        String state = null;
+        for (JsonNode f : n.path("customFields")) {
+            if ("State".equals(f.path("name").asText())) state = f.path("value").path("name").asText(null);
+        }
+        return new IssueIndex.Issue(n.path("idReadable").asText(), n.path("summary").asText(""), state,
+                n.path("updated").asLong());
     }
 
     // From Discord bot API to create a POST request to YouTrack API endpoint (in JSON format)
     public Mono<JsonNode> createIssue(String summary, String projectId) {
-        var om = new ObjectMapper();
-        var body = om.createObjectNode();
-        var proj = om.createObjectNode();
-        proj.put("id", projectId);
-        body.set("project", proj);
+        var body = OM.createObjectNode();
+        body.putObject("project").put("id", projectId);
         body.put("summary", summary);
 
         String fields = "idReadable,summary,project(shortName)";
@@ -63,10 +257,6 @@ public class YouTrackService {
                 .accept(MediaType.APPLICATION_JSON)
                 .bodyValue(body)
                 .retrieve()
-                .bodyToMono(String.class)
-                .map(s -> {
-                    try { return om.readTree(s); }
-                    catch (Exception e) { throw new RuntimeException("Parsing failed: " + e.getMessage()); }
-                });
+                .bodyToMono(JsonNode.class);
     }
 }
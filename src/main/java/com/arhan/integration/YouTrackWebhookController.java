@@ -0,0 +1,87 @@
+package com.arhan.integration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+// Push mode: a YouTrack workflow POSTs each change here (same JSON shape as the notification
+// metadata) and it goes out to Discord straight away instead of waiting for the next poll.
+// Requests are authenticated with either an HMAC-SHA256 of the body keyed with push.secret
+// (X-YouTrack-Signature: sha256=<hex>) or the secret itself (X-YouTrack-Token)
+@RestController
+@ConditionalOnProperty(name = "push.enabled", havingValue = "true")
+public class YouTrackWebhookController {
+    static final String SIGNATURE_HEADER = "X-YouTrack-Signature";
+    static final String TOKEN_HEADER = "X-YouTrack-Token";
+
+    private final NotificationScheduler scheduler;
+    private final byte[] secret;
+
+    public YouTrackWebhookController(NotificationScheduler scheduler, @Value("${push.secret:}") String secret) {
+        if (secret.isBlank()) throw new IllegalStateException("push.secret must be set when push.enabled=true");
+        this.scheduler = scheduler;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Answers 202 once the event is parsed and authenticated; delivery continues in the background
+    // and anything that fails there is picked up by the reconciliation poll
+    @PostMapping(path = "/hooks/youtrack", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Void>> receive(@RequestHeader(value = SIGNATURE_HEADER, required = false) String signature,
+                                              @RequestHeader(value = TOKEN_HEADER, required = false) String token,
+                                              @RequestBody(required = false) byte[] body) {
+        // A standby replica (cluster.enabled) leaves it to the leader; the workflow can retry elsewhere
+        if (!scheduler.active()) return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        if (body == null) return Mono.just(ResponseEntity.badRequest().build());
+        if (!authorized(signature, token, body)) return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+
+        YtMetadata meta;
+        try {
+            meta = YtMetadata.parse(body, 0, body.length);
+        } catch (Exception e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        if (meta.change().events() == null || meta.issue().id().isBlank())
+            return Mono.just(ResponseEntity.badRequest().build());
+
+        scheduler.deliverPushed(meta).subscribe(
+                sent -> {},
+                err -> System.err.println("Error delivering pushed event: " + err.getMessage()));
+        return Mono.just(ResponseEntity.accepted().build());
+    }
+
+    private boolean authorized(String signature, String token, byte[] body) {
+        if (signature != null && signature.startsWith("sha256=")) {
+            try {
+                byte[] expected = hmac(secret, body);
+                byte[] given = HexFormat.of().parseHex(signature.substring("sha256=".length()));
+                return MessageDigest.isEqual(expected, given);
+            } catch (IllegalArgumentException e) {
+                return false; // not hex
+            }
+        }
+        return token != null && MessageDigest.isEqual(secret, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static byte[] hmac(byte[] key, byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(body);
+        } catch (Exception e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
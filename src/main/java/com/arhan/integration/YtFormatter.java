@@ -1,193 +1,192 @@
 package com.arhan.integration;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
+// Renders notification metadata as Discord Markdown. Everything is appended into one reusable,
+// pre-sized builder per thread (no regex, format strings or intermediate lists); the output is
+// byte-for-byte what the original template/String.join version produced (see the golden tests)
 public class YtFormatter {
-    private static final ObjectMapper OM = new ObjectMapper();
-
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
 
     public static String fromMetadata(String metaJson, String ytWebBase) throws Exception {
         return fromMetadata(metaJson, ytWebBase, null);
     }
 
     public static String fromMetadata(String metaJson, String ytWebBase, String recipientName) throws Exception {
-        JsonNode m = OM.readTree(metaJson);
+        return render(YtMetadata.parse(metaJson), ytWebBase, recipientName);
+    }
 
-        // Creates strings for each component we want to output in our discord webhook notification
-        String id      = m.path("issue").path("id").asText("");
-        String summary = m.path("issue").path("summary").asText("");
-        String header  = m.path("header").asText("");
+    public static String render(YtMetadata m, String ytWebBase, String recipientName) {
+        // Metadata without change events can't be rendered; callers fall back to the notification content
+        List<YtMetadata.Event> events = m.change().events();
+        if (events == null) throw new IllegalArgumentException("Metadata has no change events");
+
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        YtMetadata.Issue issue = m.issue();
+
+        // **ID** — summary
+        sb.append("**").append(issue.id()).append("** — ").append(issue.summary()).append('\n');
+        appendHeaderLine(sb, m);
+        sb.append("\n\n");
+        appendChanges(sb, events, issue.description());
+        sb.append("\n\n[Open in YouTrack](");
+        appendIssueUrl(sb, issue, ytWebBase);
+        sb.append(')');
+        appendReasonSentence(sb, m.reason(), recipientName);
+
+        String out = sb.toString();
+        if (sb.capacity() > MAX_RETAINED_CAPACITY) BUFFER.set(new StringBuilder(INITIAL_CAPACITY));
+        return out;
+    }
 
-        String issueUrl = m.path("issue").path("url").asText(null);
-        if (issueUrl == null || issueUrl.isBlank()) {
-            String base = ytWebBase.endsWith("/") ? ytWebBase : ytWebBase + "/";
-            issueUrl = base + "issue/" + id;
-        }
+    // _header by author at time_ (italic, blank parts skipped)
+    // Note that the author feature is not working at the moment. Time, however, is just fine
+    private static void appendHeaderLine(StringBuilder sb, YtMetadata m) {
+        String author = m.change().author().fullName();
+        if (author.isBlank()) author = m.change().author().login();
+        if (author.isBlank()) author = m.author().fullName();
+        if (author.isBlank()) author = m.author().login();
+        String time = m.change().time();
+
+        boolean any = false;
+        if (!m.header().isBlank()) { sb.append('_').append(m.header()); any = true; }
+        if (!author.isBlank()) { sb.append(any ? " by " : "_by ").append(author); any = true; }
+        if (!time.isBlank()) { sb.append(any ? " at " : "_at ").append(time); any = true; }
+        if (any) sb.append('_');
+    }
 
-        // Note that the author feature is not working at the moment. Time, however, is just fine
-        String author = firstNonBlank(
-                m.path("change").path("author").path("fullName").asText(""),
-                m.path("change").path("author").path("login").asText(""),
-                m.path("author").path("fullName").asText(""),
-                m.path("author").path("login").asText("")
-        );
-        String time  = m.path("change").path("humanReadableTimeStamp").asText("");
-
-        // Identifies reason as change on certain events
-        // Below functions are boilerplate of retreiving relevant information from
-        // the API endpoint metadata to display to user on Discord
-        List<String> lines = new ArrayList<>();
-        ArrayNode events = (ArrayNode) m.path("change").path("events");
-        if (events != null) {
-            for (JsonNode e : events) {
-                String cat = e.path("category").asText("");
-                String name = e.path("name").asText("");
-                String removed = firstElement(e.path("removedValues"));
-                String added   = firstElement(e.path("addedValues"));
-
-                if ("CUSTOM_FIELD".equals(cat) && "Priority".equalsIgnoreCase(name)) {
-                    lines.add("**Priority:** " + removed + " → " + added);
-                } else if ("CUSTOM_FIELD".equals(cat) && "State".equalsIgnoreCase(name)) {
-                    lines.add("**Status:** " + removed + " → " + added);
-                } else if ("COMMENT".equals(cat)) {
-                    String comment = (added == null || added.isBlank()) ? name : added;
-                    if (comment != null && !comment.isBlank()) {
-                        lines.add("**Comment:** " + comment);
-                    }
+    // One line per Priority/State change and comment, then the shortened description
+    private static void appendChanges(StringBuilder sb, List<YtMetadata.Event> events, String desc) {
+        boolean first = true;
+        for (YtMetadata.Event e : events) {
+            String name = e.name();
+            if ("CUSTOM_FIELD".equals(e.category()) && "Priority".equalsIgnoreCase(name)) {
+                first = newLine(sb, first);
+                sb.append("**Priority:** ").append(e.removed()).append(" → ").append(e.added());
+            } else if ("CUSTOM_FIELD".equals(e.category()) && "State".equalsIgnoreCase(name)) {
+                first = newLine(sb, first);
+                sb.append("**Status:** ").append(e.removed()).append(" → ").append(e.added());
+            } else if ("COMMENT".equals(e.category())) {
+                String comment = e.added().isBlank() ? name : e.added();
+                if (!comment.isBlank()) {
+                    first = newLine(sb, first);
+                    sb.append("**Comment:** ").append(comment);
                 }
             }
         }
-
-        // Description (text from issue)
-        String desc = m.path("issue").path("description").asText("");
-        if (desc != null && !desc.isBlank()) {
-            String shortDesc = shorten(oneLine(desc), 160);
-            lines.add("**Description:** " + shortDesc);
+        if (!desc.isBlank()) {
+            newLine(sb, first);
+            sb.append("**Description:** ");
+            appendOneLine(sb, desc, 160);
         }
+    }
 
+    private static boolean newLine(StringBuilder sb, boolean first) {
+        if (!first) sb.append('\n');
+        return false;
+    }
 
-        String reasonSentence = buildReasonSentence(m, recipientName);
-
-        // Builds the header of info that states post time and author (but not working atm)
-        String headerLine = italic(joinNonBlank(header,
-                (author.isBlank() ? null : "by " + author),
-                (time.isBlank() ? null : "at " + time)));
-
-        String changes = lines.isEmpty() ? "" : String.join("\n", lines);
-        // regex formatting the output
-        return """
-**%s** — %s
-%s
-
-%s
+    private static void appendIssueUrl(StringBuilder sb, YtMetadata.Issue issue, String ytWebBase) {
+        String url = issue.url();
+        if (url != null && !url.isBlank()) {
+            sb.append(url);
+            return;
+        }
+        sb.append(ytWebBase);
+        if (!ytWebBase.endsWith("/")) sb.append('/');
+        sb.append("issue/").append(issue.id());
+    }
 
-[Open in YouTrack](%s)
-%s
-""".formatted(id, summary, headerLine, changes, issueUrl,
-                reasonSentence.isBlank() ? "" : "\n" + reasonSentence).trim();
+    // Line breaks and tabs become spaces, runs of spaces collapse to one, the result is trimmed
+    // and cut to max characters with a trailing ellipsis
+    private static void appendOneLine(StringBuilder sb, String s, int max) {
+        int start = sb.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\r' || c == '\n' || c == '\t') c = ' ';
+            if (sb.length() == start ? c <= ' ' : c == ' ' && sb.charAt(sb.length() - 1) == ' ') continue;
+            sb.append(c);
+        }
+        int end = sb.length();
+        while (end > start && sb.charAt(end - 1) <= ' ') end--;
+        if (end - start > max) {
+            sb.setLength(start + max - 1);
+            sb.append('…');
+        } else {
+            sb.setLength(end);
+        }
     }
 
-    private static String buildReasonSentence(JsonNode m, String recipientName) {
-        String subject = (recipientName == null || recipientName.isBlank())
-                ? "You"
-                : "You (" + recipientName + ")";
+    // "You received this message because ..." built from the mention, saved search and tag reasons
+    private static void appendReasonSentence(StringBuilder sb, YtMetadata.Reason reason, String recipientName) {
+        List<String> searches = reason.savedSearches();
+        List<String> tags = reason.tags();
+        boolean hasSearches = searches != null && !searches.isEmpty();
+        boolean hasTags = tags != null && !tags.isEmpty();
+        int clauses = (reason.mentioned() ? 1 : 0) + (hasSearches ? 1 : 0) + (hasTags ? 1 : 0);
+        if (clauses == 0) return;
 
-        List<String> clauses = new ArrayList<>();
+        sb.append("\n\nYou");
+        if (recipientName != null && !recipientName.isBlank()) sb.append(" (").append(recipientName).append(')');
+        sb.append(" received this message because ");
 
+        int clause = 0;
         // Mentions (from YouTrack)
-        JsonNode mentions = m.path("reason").path("mentionReasons");
-        if (mentions.isArray() && !mentions.isEmpty()) {
-            clauses.add("you subscribe to **@mentions** in issue descriptions and comments");
+        if (reason.mentioned()) {
+            separator(sb, clause++, clauses);
+            sb.append("you subscribe to **@mentions** in issue descriptions and comments");
         }
-
-        // Saved searches (to output)
-        JsonNode searches = m.path("reason").path("savedSearchReasons");
-        if (searches.isArray() && !searches.isEmpty()) {
-            List<String> ss = new ArrayList<>();
-            for (JsonNode n : searches) {
-                String name = n.path("name").asText("");
-                if (!name.isBlank()) ss.add("**" + name + "**");
-            }
-            if (!ss.isEmpty()) {
-                clauses.add("notification events for the " + listTogether(ss) + " saved search"
-                        + (ss.size() > 1 ? "es" : ""));
+        // Saved searches
+        if (hasSearches) {
+            separator(sb, clause++, clauses);
+            int named = countNonBlank(searches);
+            if (named > 0) {
+                sb.append("notification events for the ");
+                int i = 0;
+                for (String name : searches) {
+                    if (name.isBlank()) continue;
+                    separator(sb, i++, named);
+                    sb.append("**").append(name).append("**");
+                }
+                sb.append(named > 1 ? " saved searches" : " saved search");
             } else {
-                clauses.add("a **saved search** you’re subscribed to");
+                sb.append("a **saved search** you’re subscribed to");
             }
         }
-
-        // Identifies true reasons you receive msg from metadata (eg issue subscription)
-        JsonNode tags = m.path("reason").path("tagReasons");
-        if (tags.isArray() && tags.size() > 0) {
-            List<String> tg = new ArrayList<>();
-            for (JsonNode n : tags) {
-                String name = n.path("name").asText("");
-                if (!name.isBlank()) tg.add(name);
-            }
-            if (!tg.isEmpty()) {
-                List<String> pretty = tg.stream()
-                        .map(x -> "Star".equalsIgnoreCase(x) ? "**Star** tag" : "**" + x + "** tag")
-                        .collect(Collectors.toList());
-                clauses.add("notification events for the " + listTogether(pretty));
+        // Tag subscriptions (eg Star)
+        if (hasTags) {
+            separator(sb, clause++, clauses);
+            int named = countNonBlank(tags);
+            if (named > 0) {
+                sb.append("notification events for the ");
+                int i = 0;
+                for (String name : tags) {
+                    if (name.isBlank()) continue;
+                    separator(sb, i++, named);
+                    sb.append("**").append("Star".equalsIgnoreCase(name) ? "Star" : name).append("** tag");
+                }
             } else {
-                clauses.add("a **tag subscription**");
+                sb.append("a **tag subscription**");
             }
         }
-
-        if (clauses.isEmpty()) return "";
-
-        String because = listTogether(clauses);
-        return subject + " received this message because " + because + ". "
-                + "To unsubscribe, you can mute notifications for this issue or edit your notification preferences.";
-    }
-
-   // Necessary functions to format text appropriately (continuitation of boiler plate enhancements)
-    private static String firstElement(JsonNode arr) {
-        if (arr != null && arr.isArray() && !arr.isEmpty()) {
-            return arr.get(0).path("name").asText("");
-        }
-        return "";
+        sb.append(". To unsubscribe, you can mute notifications for this issue or edit your notification preferences.");
     }
 
-    private static String oneLine(String s) {
-        return s.replace("\r", " ").replace("\n", " ").replace("\t", " ").replaceAll(" +", " ").trim();
-    }
-
-    private static String shorten(String s, int max) {
-        if (s == null) return "";
-        return s.length() > max ? s.substring(0, max - 1) + "…" : s;
-    }
-
-    private static String firstNonBlank(String... vals) {
-        for (String v : vals) if (v != null && !v.isBlank()) return v;
-        return "";
-    }
-    
-    private static String listTogether(List<String> parts) {
-        if (parts == null || parts.isEmpty()) return "";
-        if (parts.size() == 1) return parts.get(0);
-        if (parts.size() == 2) return parts.get(0) + " and " + parts.get(1);
-        String allButLast = String.join(", ", parts.subList(0, parts.size()-1));
-        return allButLast + ", and " + parts.get(parts.size()-1);
-    }
-
-    private static String joinNonBlank(String... parts) {
-        StringBuilder sb = new StringBuilder();
-        for (String p : parts) {
-            if (p == null || p.isBlank()) continue;
-            if (!sb.isEmpty()) sb.append(' ');
-            sb.append(p);
-        }
-        return sb.toString();
+    // Separator before item i of n: "a", "a and b", "a, b, and c"
+    private static void separator(StringBuilder sb, int i, int n) {
+        if (i == 0) return;
+        if (n == 2) sb.append(" and ");
+        else if (i == n - 1) sb.append(", and ");
+        else sb.append(", ");
     }
 
-    private static String italic(String s) {
-        return (s == null || s.isBlank()) ? "" : "_" + s + "_";
+    private static int countNonBlank(List<String> values) {
+        int n = 0;
+        for (String v : values) if (!v.isBlank()) n++;
+        return n;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,292 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Typed subset of the decoded notification metadata: just the parts YtFormatter renders.
+// Parsed with a streaming JsonParser so everything else in the payload is skipped, not materialised
+public record YtMetadata(String header, Issue issue, Change change, Person author, Reason reason) {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    static final Issue NO_ISSUE = new Issue("", "", null, "");
+    static final Person NO_PERSON = new Person("", "");
+    static final Change NO_CHANGE = new Change(NO_PERSON, "", 0, null);
+    static final Reason NO_REASON = new Reason(false, null, null);
+
+    // url stays null when YouTrack didn't send one
+    public record Issue(String id, String summary, String url, String description) {}
+
+    public record Person(String fullName, String login) {}
+
+    // time is YouTrack's formatted (localized) time, timestamp the epoch millis of the change
+    // (endTimestamp, else startTimestamp, 0 if neither came); events is null when change.events is
+    // missing or not an array
+    public record Change(Person author, String time, long timestamp, List<Event> events) {}
+
+    // removed/added are the name of the first removed/added value, "" if there is none
+    public record Event(String category, String name, String removed, String added) {}
+
+    // savedSearches/tags hold the reason names (possibly blank), null when the array is absent
+    public record Reason(boolean mentioned, List<String> savedSearches, List<String> tags) {}
+
+    // Identifies the change itself rather than the notification about it, so the same change
+    // arriving by push and by poll (different ids) is only delivered once. Built from what both
+    // carry the same way: issue, author, epoch time and the fields changed. Only without an epoch
+    // time does it fall back to the formatted time and the whole events, which only match if the
+    // workflow formats the time exactly like YouTrack does
+    public String changeKey() {
+        if (change.timestamp() > 0) {
+            Set<String> fields = new TreeSet<>();
+            if (change.events() != null) {
+                for (Event e : change.events()) fields.add(e.category() + ":" + e.name().toLowerCase(Locale.ROOT));
+            }
+            return issue.id() + "@" + change.timestamp() + "/" + change.author().login()
+                    + "#" + Integer.toHexString(String.join(",", fields).hashCode());
+        }
+        int h = 1;
+        if (change.events() != null) {
+            for (Event e : change.events()) h = 31 * h + e.hashCode();
+        }
+        return issue.id() + "@" + change.time() + "#" + Integer.toHexString(h);
+    }
+
+    // Folds several changes to one issue (oldest first) into one: the latest header, issue, author
+    // and time, one event per custom field running through every value ("A → B → C"), all the
+    // comments in order, and the union of the notification reasons
+    public static YtMetadata merge(List<YtMetadata> changes) {
+        YtMetadata last = changes.get(changes.size() - 1);
+        if (changes.size() == 1) return last;
+        List<Event> events = new ArrayList<>();
+        Map<String, Integer> fieldAt = new HashMap<>();
+        boolean mentioned = false;
+        Set<String> searches = null, tags = null;
+        for (YtMetadata m : changes) {
+            if (m.change().events() != null) {
+                for (Event e : m.change().events()) {
+                    if (!"CUSTOM_FIELD".equals(e.category())) {
+                        events.add(e);
+                        continue;
+                    }
+                    Integer at = fieldAt.putIfAbsent(e.name().toLowerCase(Locale.ROOT), events.size());
+                    if (at == null) {
+                        events.add(e);
+                    } else if (!lastStep(events.get(at).added()).equals(e.added())) {
+                        Event prev = events.get(at);
+                        events.set(at, new Event(prev.category(), prev.name(), prev.removed(), prev.added() + " → " + e.added()));
+                    }
+                }
+            }
+            Reason r = m.reason();
+            mentioned |= r.mentioned();
+            if (r.savedSearches() != null) (searches = searches == null ? new LinkedHashSet<>() : searches).addAll(r.savedSearches());
+            if (r.tags() != null) (tags = tags == null ? new LinkedHashSet<>() : tags).addAll(r.tags());
+        }
+        return new YtMetadata(last.header(), last.issue(),
+                new Change(last.change().author(), last.change().time(), last.change().timestamp(), events), last.author(),
+                new Reason(mentioned, searches == null ? null : List.copyOf(searches), tags == null ? null : List.copyOf(tags)));
+    }
+
+    // The value a custom field was set to by this change (the last step of a merged one), or null
+    public String field(String name) {
+        if (change.events() == null) return null;
+        String value = null;
+        for (Event e : change.events()) {
+            if ("CUSTOM_FIELD".equals(e.category()) && name.equalsIgnoreCase(e.name()) && e.added() != null) {
+                value = lastStep(e.added());
+            }
+        }
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    private static String lastStep(String steps) {
+        int cut = steps.lastIndexOf(" → ");
+        return cut < 0 ? steps : steps.substring(cut + 3);
+    }
+
+    public static YtMetadata parse(String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return parse(bytes, 0, bytes.length);
+    }
+
+    public static YtMetadata parse(byte[] json, int off, int len) throws IOException {
+        try (JsonParser p = JSON.createParser(json, off, len)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) throw new IOException("Metadata is not a JSON object");
+            String header = "";
+            Issue issue = NO_ISSUE;
+            Change change = NO_CHANGE;
+            Person author = NO_PERSON;
+            Reason reason = NO_REASON;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String f = p.currentName();
+                p.nextToken();
+                switch (f) {
+                    case "header" -> header = text(p, "");
+                    case "issue" -> issue = p.currentToken() == JsonToken.START_OBJECT ? issue(p) : skip(p, NO_ISSUE);
+                    case "change" -> change = p.currentToken() == JsonToken.START_OBJECT ? change(p) : skip(p, NO_CHANGE);
+                    case "author" -> author = p.currentToken() == JsonToken.START_OBJECT ? person(p) : skip(p, NO_PERSON);
+                    case "reason" -> reason = p.currentToken() == JsonToken.START_OBJECT ? reason(p) : skip(p, NO_REASON);
+                    default -> p.skipChildren();
+                }
+            }
+            return new YtMetadata(header, issue, change, author, reason);
+        }
+    }
+
+    private static Issue issue(JsonParser p) throws IOException {
+        String id = "", summary = "", url = null, description = "";
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String f = p.currentName();
+            p.nextToken();
+            switch (f) {
+                case "id" -> id = text(p, "");
+                case "summary" -> summary = text(p, "");
+                case "url" -> url = text(p, null);
+                case "description" -> description = text(p, "");
+                default -> p.skipChildren();
+            }
+        }
+        return new Issue(id, summary, url, description);
+    }
+
+    private static Person person(JsonParser p) throws IOException {
+        String fullName = "", login = "";
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String f = p.currentName();
+            p.nextToken();
+            switch (f) {
+                case "fullName" -> fullName = text(p, "");
+                case "login" -> login = text(p, "");
+                default -> p.skipChildren();
+            }
+        }
+        return new Person(fullName, login);
+    }
+
+    private static Change change(JsonParser p) throws IOException {
+        Person author = NO_PERSON;
+        String time = "";
+        long start = 0, end = 0;
+        List<Event> events = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String f = p.currentName();
+            p.nextToken();
+            switch (f) {
+                case "author" -> author = p.currentToken() == JsonToken.START_OBJECT ? person(p) : skip(p, NO_PERSON);
+                case "humanReadableTimeStamp" -> time = text(p, "");
+                case "startTimestamp" -> start = millis(p);
+                case "endTimestamp" -> end = millis(p);
+                case "events" -> events = p.currentToken() == JsonToken.START_ARRAY ? events(p) : skip(p, null);
+                default -> p.skipChildren();
+            }
+        }
+        return new Change(author, time, end > 0 ? end : start, events);
+    }
+
+    private static List<Event> events(JsonParser p) throws IOException {
+        List<Event> events = new ArrayList<>();
+        JsonToken t;
+        while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+            if (t != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                events.add(new Event("", "", "", ""));
+                continue;
+            }
+            String category = "", name = "", removed = "", added = "";
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String f = p.currentName();
+                p.nextToken();
+                switch (f) {
+                    case "category" -> category = text(p, "");
+                    case "name" -> name = text(p, "");
+                    case "removedValues" -> removed = firstName(p);
+                    case "addedValues" -> added = firstName(p);
+                    default -> p.skipChildren();
+                }
+            }
+            events.add(new Event(category, name, removed, added));
+        }
+        return events;
+    }
+
+    private static Reason reason(JsonParser p) throws IOException {
+        boolean mentioned = false;
+        List<String> searches = null, tags = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String f = p.currentName();
+            p.nextToken();
+            switch (f) {
+                case "mentionReasons" -> mentioned = p.currentToken() == JsonToken.START_ARRAY ? !names(p).isEmpty() : skip(p, false);
+                case "savedSearchReasons" -> searches = p.currentToken() == JsonToken.START_ARRAY ? names(p) : skip(p, null);
+                case "tagReasons" -> tags = p.currentToken() == JsonToken.START_ARRAY ? names(p) : skip(p, null);
+                default -> p.skipChildren();
+            }
+        }
+        return new Reason(mentioned, searches, tags);
+    }
+
+    // "name" of every element in the current array ("" for elements without one)
+    private static List<String> names(JsonParser p) throws IOException {
+        List<String> out = new ArrayList<>();
+        while (p.nextToken() != JsonToken.END_ARRAY) out.add(nameOf(p));
+        return out;
+    }
+
+    // "name" of the first element of the current array, "" if it is empty or not an array
+    private static String firstName(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) return skip(p, "");
+        String first = null;
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            String name = nameOf(p);
+            if (first == null) first = name;
+        }
+        return first == null ? "" : first;
+    }
+
+    private static String nameOf(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) return skip(p, "");
+        String name = "";
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String f = p.currentName();
+            p.nextToken();
+            if ("name".equals(f)) name = text(p, "");
+            else p.skipChildren();
+        }
+        return name;
+    }
+
+    // Same rules as JsonNode.asText(def): scalars as text, null gives the default, containers give ""
+    private static String text(JsonParser p, String def) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == JsonToken.VALUE_NULL) return def;
+        if (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY) return skip(p, "");
+        return p.getText();
+    }
+
+    // A number, or a string of one; 0 for anything else
+    private static long millis(JsonParser p) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == JsonToken.VALUE_NUMBER_INT) return p.getLongValue();
+        if (t == JsonToken.VALUE_STRING) {
+            try { return Long.parseLong(p.getText().trim()); }
+            catch (NumberFormatException e) { return 0; }
+        }
+        return skip(p, 0L);
+    }
+
+    private static <T> T skip(JsonParser p, T value) throws IOException {
+        p.skipChildren();
+        return value;
+    }
+}
@@ -0,0 +1,101 @@
+package com.arhan.integration;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// execution.mode=virtual (Java 21): the poller and each queue partition's sender run their
+// sequential round (Execution.Sequential) on a virtual thread of their own, as plain blocking
+// code with HTTP on java.net.http, so a round never hops threads; while it waits for YouTrack or
+// Discord only the virtual thread parks. Every message is formatted on its own virtual thread and
+// how many run at once is left to the carrier threads (one per core), so pipeline.concurrency
+// isn't used here. Loops without a sequential round (the issue index sync) still run their Mono
+// and park in block(). Stopping a loop goes through its Pause, never Thread.interrupt(), which
+// would close the file channels the round is using
+public class VirtualThreadExecution implements Execution {
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final Scheduler virtual = Schedulers.fromExecutorService(threads, "virtual");
+
+    @Override
+    public <T, R> Flux<R> mapOrdered(List<T> items, int concurrency, Function<T, R> fn) {
+        return blocking(() -> mapAll(items, concurrency, fn)).flatMapIterable(out -> out);
+    }
+
+    @Override
+    public <T, R> List<R> mapAll(List<T> items, int concurrency, Function<T, R> fn) {
+        List<Future<R>> futures = new ArrayList<>(items.size());
+        for (T item : items) futures.add(threads.submit(() -> fn.apply(item)));
+        List<R> out = new ArrayList<>(items.size());
+        try {
+            for (Future<R> f : futures) out.add(f.get());
+        } catch (ExecutionException e) {
+            for (Future<R> f : futures) f.cancel(true);
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            for (Future<R> f : futures) f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("interrupted");
+        }
+        return out;
+    }
+
+    @Override
+    public <T> Mono<T> blocking(Callable<T> work) {
+        // Already on a virtual thread (the poller, a sender): just block it
+        return Mono.defer(() -> Thread.currentThread().isVirtual()
+                ? Mono.fromCallable(work)
+                : Mono.fromCallable(work).subscribeOn(virtual));
+    }
+
+    @Override
+    public Disposable loop(String name, Supplier<Mono<Void>> round) {
+        return loop(name, round, pause -> round.get().block());
+    }
+
+    @Override
+    public Disposable loop(String name, Supplier<Mono<Void>> round, Sequential sequential) {
+        Pause pause = new Pause();
+        Thread thread = Thread.ofVirtual().name(name).start(() -> {
+            while (!pause.stopped()) {
+                try {
+                    sequential.run(pause);
+                } catch (CancellationException e) {
+                    // stopped in the middle of a wait
+                } catch (Exception e) {
+                    if (!pause.stopped()) System.err.println("Error in " + name + ": " + e.getMessage());
+                }
+            }
+        });
+        // Ends the round's current wait and lets it finish what it was writing
+        return () -> {
+            pause.stop();
+            if (thread == Thread.currentThread()) return;
+            try { thread.join(); }
+            catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        };
+    }
+
+    @Override
+    public Executor executor() { return threads; }
+
+    @Override
+    public void close() {
+        threads.shutdownNow();
+    }
+}
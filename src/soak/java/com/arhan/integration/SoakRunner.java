@@ -0,0 +1,265 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Soak run of the whole application: boots IntegrationApplication against StubYouTrack and
+// StubDiscord, publishes `rate` notifications a second (and `createRate` /youtrack create requests)
+// for `minutes`, then drains and reports sustained throughput, end-to-end p50/p99 (published in
+// YouTrack to received by Discord), loss, duplicates, heap after GC and GC time. Exits 1 when a
+// threshold is missed, so CI can run it as a gate.
+// Args are key=value (see DEFAULTS); app.<property>=<value> goes to the application, e.g.
+// app.execution.mode=virtual or app.coalesce.enabled=true
+public class SoakRunner {
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    static {
+        DEFAULTS.put("minutes", "10");
+        DEFAULTS.put("warmupSeconds", "30");
+        DEFAULTS.put("rate", "3");                  // notifications a second
+        DEFAULTS.put("createRate", "0.2");          // /youtrack create requests a second
+        DEFAULTS.put("window", "2000");             // notifications the YouTrack stub keeps
+        DEFAULTS.put("discordLatencyMillis", "80");
+        DEFAULTS.put("bucketSize", "5");            // Discord's webhook bucket: 5 posts per 2s
+        DEFAULTS.put("bucketMillis", "2000");
+        DEFAULTS.put("perMinute", "30");            // and 30 posts a minute per channel
+        DEFAULTS.put("errorRate", "0.01");          // posts answered with a 502
+        DEFAULTS.put("drainSeconds", "180");
+        DEFAULTS.put("reportSeconds", "30");
+        // Thresholds, 0 for no check (loss and duplicates are always checked)
+        DEFAULTS.put("minThroughput", "0");
+        DEFAULTS.put("maxP99Millis", "0");
+        DEFAULTS.put("maxHeapGrowthMb", "0");
+        DEFAULTS.put("maxLoss", "0");
+        DEFAULTS.put("maxDuplicates", "0");
+        DEFAULTS.put("report", "target/soak-report.txt");
+    }
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) throws Exception {
+        // devtools would restart the context from our main with the application's arguments
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Map<String, String> opts = new LinkedHashMap<>(DEFAULTS);
+        List<String> appArgs = new ArrayList<>();
+        for (String a : args) {
+            String[] kv = a.split("=", 2);
+            if (kv.length != 2) throw new IllegalArgumentException("expected key=value, got " + a);
+            if (kv[0].startsWith("app.")) appArgs.add("--" + kv[0].substring(4) + "=" + kv[1]);
+            else if (DEFAULTS.containsKey(kv[0])) opts.put(kv[0], kv[1]);
+            else throw new IllegalArgumentException("unknown option " + kv[0] + ", known: " + DEFAULTS.keySet());
+        }
+        System.exit(new SoakRunner(opts).run(appArgs));
+    }
+
+    private final Map<String, String> opts;
+
+    private SoakRunner(Map<String, String> opts) { this.opts = opts; }
+
+    private double d(String key) { return Double.parseDouble(opts.get(key)); }
+    private long l(String key) { return Long.parseLong(opts.get(key)); }
+
+    private int run(List<String> appArgs) throws Exception {
+        Path state = Files.createTempDirectory("soak");
+        try (StubYouTrack youtrack = new StubYouTrack(d("rate"), 1000, (int) l("window"));
+             StubDiscord discord = new StubDiscord(l("discordLatencyMillis"), (int) l("bucketSize"), l("bucketMillis"),
+                     (int) l("perMinute"), d("errorRate"))) {
+            List<String> args = new ArrayList<>(List.of(
+                    "--youtrack.baseUrl=" + youtrack.apiUrl(),
+                    "--youtrack.token=soak",
+                    "--youtrack.projectId=0-0",
+                    "--discord.webhookUrl=" + discord.webhookUrl(),
+                    "--discord.botToken=",
+                    "--poll.seconds=1",
+                    "--poll.minSeconds=1",
+                    "--poll.maxSeconds=5",
+                    "--index.syncMinutes=0",
+                    "--state.dir=" + state,
+                    "--server.port=0",
+                    "--spring.main.banner-mode=off"));
+            args.addAll(appArgs);
+            System.out.println("Soak: " + opts + " " + appArgs);
+            return soak(youtrack, discord, args);
+        }
+    }
+
+    private int soak(StubYouTrack youtrack, StubDiscord discord, List<String> args) throws Exception {
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(IntegrationApplication.class).run(args.toArray(String[]::new));
+        Destinations destinations = ctx.getBean(Destinations.class);
+        IssueCreationQueue creator = ctx.getBean(IssueCreationQueue.class);
+        ScheduledExecutorService timers = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "soak-runner");
+            t.setDaemon(true);
+            return t;
+        });
+        Creates creates = new Creates();
+        AtomicLong peakHeap = new AtomicLong();
+        try {
+            long start = System.currentTimeMillis();
+            youtrack.start();
+            if (d("createRate") > 0) {
+                timers.scheduleAtFixedRate(() -> creates.submit(creator), 0, (long) (1_000_000 / d("createRate")), TimeUnit.MICROSECONDS);
+            }
+            timers.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(MEMORY.getHeapMemoryUsage().getUsed(), Math::max),
+                    0, 1, TimeUnit.SECONDS);
+            timers.scheduleAtFixedRate(() -> progress(start, youtrack, discord, destinations),
+                    l("reportSeconds"), l("reportSeconds"), TimeUnit.SECONDS);
+
+            Thread.sleep(l("warmupSeconds") * 1000);
+            long baseHeap = heapAfterGc();
+            long measureFrom = System.currentTimeMillis();
+            GcTotals gcFrom = GcTotals.now();
+            int seqFrom = youtrack.published();
+
+            Thread.sleep(Math.max(0, l("minutes") * 60_000 - l("warmupSeconds") * 1000));
+            youtrack.stopPublishing();
+            long measureTo = System.currentTimeMillis();
+            GcTotals gc = GcTotals.now().minus(gcFrom);
+            int published = youtrack.published();
+            // What's been published should all arrive once the pipeline catches up
+            long drainDeadline = System.currentTimeMillis() + l("drainSeconds") * 1000;
+            while (discord.arrivedAt.size() < published && System.currentTimeMillis() < drainDeadline) Thread.sleep(100);
+            long drainMillis = System.currentTimeMillis() - measureTo;
+            Thread.sleep(1000); // for late duplicates
+            long endHeap = heapAfterGc();
+
+            return report(youtrack, discord, creates, published, seqFrom, measureFrom, measureTo, drainMillis,
+                    baseHeap, endHeap, peakHeap.get(), gc);
+        } finally {
+            timers.shutdownNow();
+            ctx.close();
+        }
+    }
+
+    private void progress(long start, StubYouTrack youtrack, StubDiscord discord, Destinations destinations) {
+        System.out.printf(Locale.ROOT, "Soak %4ds: published %d, delivered %d, queued %d, posts %d, 429s %d, heap %d MB%n",
+                (System.currentTimeMillis() - start) / 1000, youtrack.published(), discord.arrivedAt.size(),
+                destinations.pending(), discord.posts.get(), discord.rateLimited.get(),
+                MEMORY.getHeapMemoryUsage().getUsed() >> 20);
+    }
+
+    private int report(StubYouTrack youtrack, StubDiscord discord, Creates creates, int published, int seqFrom,
+                       long measureFrom, long measureTo, long drainMillis, long baseHeap, long endHeap, long peakHeap,
+                       GcTotals gc) throws Exception {
+        // Latency of everything published after the warm-up, throughput of what arrived while publishing
+        List<Long> latencies = new ArrayList<>();
+        int arrivedInWindow = 0;
+        for (int seq = seqFrom; seq < published; seq++) {
+            Long arrived = discord.arrivedAt.get(seq);
+            if (arrived == null) continue;
+            latencies.add(arrived - youtrack.publishedAt.get(seq));
+        }
+        for (long arrived : discord.arrivedAt.values()) if (arrived >= measureFrom && arrived < measureTo) arrivedInWindow++;
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        double seconds = (measureTo - measureFrom) / 1000.0;
+        double throughput = arrivedInWindow / seconds;
+        int lost = published - discord.arrivedAt.size();
+        long p99 = percentile(sorted, 0.99);
+        double growthMb = (endHeap - baseHeap) / 1048576.0;
+
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(Locale.ROOT, "Soak: %s minutes at %s/s, measured %.0fs after %ss warm-up",
+                opts.get("minutes"), opts.get("rate"), seconds, opts.get("warmupSeconds")));
+        lines.add(String.format(Locale.ROOT, "  throughput     %.2f notifications/s delivered (offered %s/s)", throughput, opts.get("rate")));
+        lines.add(String.format(Locale.ROOT, "  end-to-end     p50 %d ms, p99 %d ms, max %d ms (%d samples)",
+                percentile(sorted, 0.5), p99, sorted.length == 0 ? 0 : sorted[sorted.length - 1], sorted.length));
+        lines.add(String.format(Locale.ROOT, "  delivery       %d published, %d delivered, %d lost, %d duplicates, drained in %d ms",
+                published, discord.arrivedAt.size(), lost, discord.duplicates.get(), drainMillis));
+        lines.add(String.format(Locale.ROOT, "  discord        %d posts, %d answered 429, %d answered 502, %d polls seen by YouTrack",
+                discord.posts.get(), discord.rateLimited.get(), discord.errors.get(), youtrack.polls.get()));
+        lines.add(String.format(Locale.ROOT, "  creates        %d submitted, %d created (%d in YouTrack), %d joined, %d rejected, %d failed, p99 %d ms",
+                creates.submitted.get(), creates.created.get(), youtrack.created.get(), creates.joined.get(),
+                creates.rejected.get(), creates.failed.get(), percentile(creates.sortedMillis(), 0.99)));
+        lines.add(String.format(Locale.ROOT, "  heap           %.1f MB after GC at start, %.1f MB at end (%+.1f MB), peak %.1f MB",
+                baseHeap / 1048576.0, endHeap / 1048576.0, growthMb, peakHeap / 1048576.0));
+        lines.add(String.format(Locale.ROOT, "  gc             %d collections, %d ms (%.2f%% of the run)",
+                gc.count, gc.millis, 100.0 * gc.millis / (measureTo - measureFrom)));
+
+        List<String> failures = new ArrayList<>();
+        if (lost > l("maxLoss")) failures.add(lost + " lost > maxLoss " + opts.get("maxLoss"));
+        if (discord.duplicates.get() > l("maxDuplicates"))
+            failures.add(discord.duplicates.get() + " duplicates > maxDuplicates " + opts.get("maxDuplicates"));
+        if (d("minThroughput") > 0 && throughput < d("minThroughput"))
+            failures.add(String.format(Locale.ROOT, "throughput %.2f/s < minThroughput %s", throughput, opts.get("minThroughput")));
+        if (l("maxP99Millis") > 0 && p99 > l("maxP99Millis")) failures.add("p99 " + p99 + " ms > maxP99Millis " + opts.get("maxP99Millis"));
+        if (d("maxHeapGrowthMb") > 0 && growthMb > d("maxHeapGrowthMb"))
+            failures.add(String.format(Locale.ROOT, "heap grew %.1f MB > maxHeapGrowthMb %s", growthMb, opts.get("maxHeapGrowthMb")));
+        lines.add(failures.isEmpty() ? "  result         PASS" : "  result         FAIL: " + String.join("; ", failures));
+
+        lines.forEach(System.out::println);
+        Path report = Paths.get(opts.get("report"));
+        if (report.getParent() != null) Files.createDirectories(report.getParent());
+        Files.write(report, lines);
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    private static long percentile(long[] sorted, double q) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(q * sorted.length) - 1)];
+    }
+
+    // Used heap right after a full collection, i.e. what's live
+    private static long heapAfterGc() throws InterruptedException {
+        System.gc();
+        Thread.sleep(200);
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    private record GcTotals(long count, long millis) {
+        static GcTotals now() {
+            long count = 0, millis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, gc.getCollectionCount());
+                millis += Math.max(0, gc.getCollectionTime());
+            }
+            return new GcTotals(count, millis);
+        }
+
+        GcTotals minus(GcTotals o) { return new GcTotals(count - o.count, millis - o.millis); }
+    }
+
+    // /youtrack create requests, each from its own user with its own summary, and how long they took
+    private static final class Creates {
+        final AtomicInteger submitted = new AtomicInteger();
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger joined = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final ConcurrentLinkedQueue<Long> millis = new ConcurrentLinkedQueue<>();
+
+        void submit(IssueCreationQueue queue) {
+            int n = submitted.incrementAndGet();
+            long start = System.nanoTime();
+            IssueCreationQueue.Submission s = queue.submit("soak-" + n, "Soak request " + n, new IssueCreationQueue.Feedback() {
+                @Override public void queued(int position) {}
+                @Override public void created(JsonNode issue, boolean first) {
+                    created.incrementAndGet();
+                    millis.add((System.nanoTime() - start) / 1_000_000);
+                }
+                @Override public void failed(Throwable err) { failed.incrementAndGet(); }
+            });
+            if (s == IssueCreationQueue.Submission.JOINED) joined.incrementAndGet();
+            else if (s == IssueCreationQueue.Submission.REJECTED) rejected.incrementAndGet();
+        }
+
+        long[] sortedMillis() { return millis.stream().mapToLong(Long::longValue).sorted().toArray(); }
+    }
+}
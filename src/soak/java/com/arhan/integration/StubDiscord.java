@@ -0,0 +1,126 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Stand-in for a Discord webhook in the soak run, with Discord's habits:
+//  - every post takes a log-normal latency around latencyMillis
+//  - a bucket of bucketSize posts per bucketMillis, announced in X-RateLimit-* headers, and a 429
+//    with retry_after for posts over it
+//  - a channel limit of perMinute posts a minute that the headers don't show (scope "shared"),
+//    0 to turn it off
+//  - errorRate of the posts fail with a 502
+// The first arrival of each "soak seq N" is kept for the end-to-end latency, later ones are duplicates
+class StubDiscord implements AutoCloseable {
+    private static final ObjectMapper OM = new ObjectMapper();
+    private static final Pattern SEQ = Pattern.compile("soak seq (\\d+)");
+
+    private final long latencyMillis;
+    private final int bucketSize;
+    private final long bucketMillis;
+    private final int perMinute;
+    private final double errorRate;
+    private final DisposableServer server;
+
+    // Guarded by this
+    private long bucketStart;
+    private int bucketUsed;
+    private final ArrayDeque<Long> lastMinute = new ArrayDeque<>();
+
+    final Map<Integer, Long> arrivedAt = new ConcurrentHashMap<>();
+    final AtomicInteger posts = new AtomicInteger();
+    final AtomicInteger duplicates = new AtomicInteger();
+    final AtomicInteger rateLimited = new AtomicInteger();
+    final AtomicInteger errors = new AtomicInteger();
+
+    StubDiscord(long latencyMillis, int bucketSize, long bucketMillis, int perMinute, double errorRate) {
+        this.latencyMillis = latencyMillis;
+        this.bucketSize = bucketSize;
+        this.bucketMillis = bucketMillis;
+        this.perMinute = perMinute;
+        this.errorRate = errorRate;
+        server = HttpServer.create().port(0).route(r -> r.post("/hook", this::hook)).bindNow();
+    }
+
+    String webhookUrl() { return "http://localhost:" + server.port() + "/hook"; }
+
+    // What the rate limits say about a post arriving now: 0 to accept it, or the seconds to wait
+    private synchronized double admit(HttpServerResponse res) {
+        long now = System.currentTimeMillis();
+        if (now - bucketStart >= bucketMillis) {
+            bucketStart = now;
+            bucketUsed = 0;
+        }
+        double resetAfter = (bucketStart + bucketMillis - now) / 1000.0;
+        res.header("X-RateLimit-Limit", Integer.toString(bucketSize))
+                .header("X-RateLimit-Reset-After", String.format(Locale.ROOT, "%.3f", resetAfter))
+                .header("X-RateLimit-Bucket", "soak");
+        if (bucketUsed >= bucketSize) {
+            res.header("X-RateLimit-Remaining", "0").header("X-RateLimit-Scope", "user");
+            return resetAfter;
+        }
+        while (!lastMinute.isEmpty() && now - lastMinute.peekFirst() >= 60_000) lastMinute.pollFirst();
+        if (perMinute > 0 && lastMinute.size() >= perMinute) {
+            res.header("X-RateLimit-Remaining", Integer.toString(bucketSize - bucketUsed)).header("X-RateLimit-Scope", "shared");
+            return (lastMinute.peekFirst() + 60_000 - now) / 1000.0;
+        }
+        bucketUsed++;
+        lastMinute.addLast(now);
+        res.header("X-RateLimit-Remaining", Integer.toString(bucketSize - bucketUsed));
+        return 0;
+    }
+
+    private Mono<Void> hook(HttpServerRequest req, HttpServerResponse res) {
+        return req.receive().aggregate().asString(StandardCharsets.UTF_8).flatMap(body -> {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            long latency = (long) (latencyMillis * Math.exp(0.5 * rnd.nextGaussian()));
+            double retryAfter = admit(res);
+            if (retryAfter > 0) {
+                rateLimited.incrementAndGet();
+                String limited = String.format(Locale.ROOT,
+                        "{\"message\":\"You are being rate limited.\",\"retry_after\":%.3f,\"global\":false}", retryAfter);
+                return res.status(429).header("Content-Type", "application/json").sendString(Mono.just(limited)).then();
+            }
+            if (rnd.nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                return Mono.delay(Duration.ofMillis(latency)).then(res.status(502).send());
+            }
+            return Mono.delay(Duration.ofMillis(latency)).then(Mono.defer(() -> {
+                posts.incrementAndGet();
+                record(body);
+                return res.status(204).send();
+            }));
+        });
+    }
+
+    private void record(String body) {
+        long now = System.currentTimeMillis();
+        try {
+            for (JsonNode e : OM.readTree(body).path("embeds")) {
+                Matcher m = SEQ.matcher(e.path("description").asText());
+                if (m.find() && arrivedAt.putIfAbsent(Integer.parseInt(m.group(1)), now) != null) duplicates.incrementAndGet();
+            }
+        } catch (Exception e) {
+            System.err.println("Soak Discord stub couldn't read a post: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() { server.disposeNow(); }
+}
@@ -0,0 +1,166 @@
+package com.arhan.integration;
+
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+// Stand-in for YouTrack in the soak run. Publishes `rate` notifications a second and serves the
+// newest `window` of them on /users/notifications the way YouTrack does (newest first, paged by
+// $skip/$top, base64 gzipped metadata). Every notification has a "soak seq N" comment so the
+// Discord stub can tell which one arrived; the rest of the metadata varies between State and
+// Priority changes, saved search and tag reasons. POST /issues creates an issue, GET /issues
+// (the index sync) finds nothing
+class StubYouTrack implements AutoCloseable {
+    private static final String[] PRIORITIES = {"Minor", "Normal", "Major", "Critical", "Show-stopper"};
+    private static final String[] STATES = {"Open", "In Progress", "Fixed", "Verified"};
+    private static final String[] SEARCHES = {"Assigned to me", "Reported by me", "Commented by me"};
+
+    private final double rate;
+    private final int issues;
+    private final int window;
+    private final DisposableServer server;
+    private final ScheduledExecutorService publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "soak-youtrack");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Served notifications, oldest first, capped at window. Guarded by this
+    private final List<String> served = new ArrayList<>();
+    private int published;
+    private long startedAt;
+    private boolean publishing;
+
+    // When each seq was published, for the end-to-end latency
+    final Map<Integer, Long> publishedAt = new ConcurrentHashMap<>();
+    final AtomicInteger polls = new AtomicInteger();
+    final AtomicInteger created = new AtomicInteger();
+
+    StubYouTrack(double rate, int issues, int window) {
+        this.rate = rate;
+        this.issues = issues;
+        this.window = window;
+        server = HttpServer.create().port(0).route(r -> r
+                .get("/api/users/notifications", this::notifications)
+                .post("/api/issues", this::create)
+                .get("/api/issues", (req, res) -> json(res, "[]"))
+                .get("/api/issues/{id}", (req, res) -> res.status(404).send())).bindNow();
+    }
+
+    String apiUrl() { return "http://localhost:" + server.port() + "/api"; }
+
+    // Publishes on a 10ms tick, catching up to rate * elapsed so the rate holds whatever the tick does
+    synchronized void start() {
+        startedAt = System.nanoTime();
+        publishing = true;
+        publisher.scheduleAtFixedRate(this::publish, 0, 10, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stopPublishing() { publishing = false; }
+
+    synchronized int published() { return published; }
+
+    private synchronized void publish() {
+        if (!publishing) return;
+        long due = (long) ((System.nanoTime() - startedAt) / 1e9 * rate);
+        while (published < due) {
+            int seq = published++;
+            long now = System.currentTimeMillis();
+            served.add("{\"id\":\"2-" + seq + "\",\"updated\":" + now + ",\"metadata\":\"" + metadata(seq) + "\"}");
+            publishedAt.put(seq, now);
+        }
+        if (served.size() > window) served.subList(0, served.size() - window).clear();
+    }
+
+    private static String metadata(int seq) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        StringBuilder events = new StringBuilder("{\"category\":\"COMMENT\",\"name\":\"\",\"addedValues\":[{\"name\":\"soak seq " + seq + "\"}]}");
+        if (seq % 3 == 0) {
+            int from = rnd.nextInt(STATES.length - 1);
+            events.append(",{\"category\":\"CUSTOM_FIELD\",\"name\":\"State\",\"removedValues\":[{\"name\":\"")
+                    .append(STATES[from]).append("\"}],\"addedValues\":[{\"name\":\"").append(STATES[from + 1]).append("\"}]}");
+        }
+        if (seq % 5 == 0) {
+            events.append(",{\"category\":\"CUSTOM_FIELD\",\"name\":\"Priority\",\"removedValues\":[{\"name\":\"Normal\"}],\"addedValues\":[{\"name\":\"")
+                    .append(PRIORITIES[rnd.nextInt(PRIORITIES.length)]).append("\"}]}");
+        }
+        String reason = seq % 7 == 0
+                ? "{\"tagReasons\":[{\"name\":\"soak\"}]}"
+                : "{\"savedSearchReasons\":[{\"name\":\"" + SEARCHES[seq % SEARCHES.length] + "\"}]}";
+        String json = """
+                {"header":"Issue updated","issue":{"id":"SOAK-%d","summary":"Soak issue %d","description":"Generated by the soak run"},
+                 "change":{"author":{"login":"soak"},"humanReadableTimeStamp":"now","events":[%s]},
+                 "reason":%s}""".formatted(seq % 1000, seq % 1000, events, reason);
+        return b64gzip(json);
+    }
+
+    private static String b64gzip(String s) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(bos)) {
+            gz.write(s.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getEncoder().encodeToString(bos.toByteArray());
+    }
+
+    private Mono<Void> notifications(HttpServerRequest req, HttpServerResponse res) {
+        polls.incrementAndGet();
+        Map<String, String> q = new HashMap<>();
+        int at = req.uri().indexOf('?');
+        if (at >= 0) {
+            for (String kv : req.uri().substring(at + 1).split("&")) {
+                String[] p = kv.split("=", 2);
+                if (p.length == 2) q.put(p[0], p[1]);
+            }
+        }
+        int skip = Integer.parseInt(q.getOrDefault("$skip", "0"));
+        int top = Integer.parseInt(q.getOrDefault("$top", "50"));
+        StringBuilder page = new StringBuilder("[");
+        synchronized (this) {
+            // newest first
+            int from = served.size() - 1 - skip;
+            for (int i = from; i >= 0 && i > from - top; i--) {
+                if (page.length() > 1) page.append(',');
+                page.append(served.get(i));
+            }
+        }
+        return json(res, page.append(']').toString());
+    }
+
+    private Mono<Void> create(HttpServerRequest req, HttpServerResponse res) {
+        return req.receive().aggregate().asString(StandardCharsets.UTF_8).defaultIfEmpty("").flatMap(body -> {
+            int n = created.incrementAndGet();
+            return json(res, "{\"idReadable\":\"SOAK-C" + n + "\",\"summary\":\"created\",\"project\":{\"shortName\":\"SOAK\"}}");
+        });
+    }
+
+    private static Mono<Void> json(HttpServerResponse res, String body) {
+        return res.header("Content-Type", "application/json").sendString(Mono.just(body)).then();
+    }
+
+    @Override
+    public void close() {
+        publisher.shutdownNow();
+        server.disposeNow();
+    }
+}
@@ -0,0 +1,103 @@
+package com.arhan.integration;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class B64GzipDecoderTest {
+
+    private static byte[] gzip(byte[] data) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(bos)) { gz.write(data); }
+        return bos.toByteArray();
+    }
+
+    // Flushed before closing: the data ends a block of its own and empty blocks follow it
+    private static byte[] gzipFlushed(byte[] data) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(bos, true)) {
+            gz.write(data);
+            gz.flush();
+        }
+        return bos.toByteArray();
+    }
+
+    private static byte[] b64(byte[] data) {
+        return Base64.getEncoder().encode(data);
+    }
+
+    @Test
+    void roundTripsPayloadsOfAllSizes() throws Exception {
+        B64GzipDecoder decoder = new B64GzipDecoder(1 << 20, 2);
+        Random rnd = new Random(42);
+        for (int size : new int[]{0, 1, 2, 3, 100, 8191, 8192, 70_000, 300_000}) {
+            byte[] data = new byte[size];
+            for (int i = 0; i < size; i++) data[i] = (byte) (rnd.nextInt(4) == 0 ? rnd.nextInt() : 'a' + i % 7);
+            byte[] decoded = decoder.decode(b64(gzip(data)), (buf, off, len) -> Arrays.copyOfRange(buf, off, off + len));
+            assertArrayEquals(data, decoded, "size " + size);
+        }
+        assertEquals(1, decoder.inflatersCreated()); // one pooled Inflater reused for every call
+    }
+
+    @Test
+    void acceptsUnpaddedBase64AndHeaderFields() throws Exception {
+        B64GzipDecoder decoder = new B64GzipDecoder(1 << 20, 2);
+        byte[] gz = gzip("{\"header\":\"x\"}".getBytes(StandardCharsets.UTF_8));
+        assertEquals("{\"header\":\"x\"}", decoder.decodeToString(Base64.getEncoder().withoutPadding().encode(gz)));
+
+        // Same member with FNAME set and a file name inserted after the 10 byte header
+        byte[] named = new byte[gz.length + 4];
+        System.arraycopy(gz, 0, named, 0, 10);
+        named[3] = 8;
+        named[10] = 'a'; named[11] = '.'; named[12] = 'j'; named[13] = 0;
+        System.arraycopy(gz, 10, named, 14, gz.length - 10);
+        assertEquals("{\"header\":\"x\"}", decoder.decodeToString(b64(named)));
+    }
+
+    @Test
+    void countsFailuresInsteadOfHidingThem() throws Exception {
+        B64GzipDecoder decoder = new B64GzipDecoder(1024, 2);
+        byte[] gz = gzip("hello".repeat(10).getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("", decoder.decodeToString("not base64!".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(1, decoder.failures(B64GzipDecoder.Failure.BASE64));
+
+        assertEquals("", decoder.decodeToString(b64("plain text".getBytes(StandardCharsets.UTF_8))));
+        byte[] truncated = Arrays.copyOf(gz, gz.length - 6);
+        assertEquals("", decoder.decodeToString(b64(truncated)));
+        byte[] corrupt = gz.clone();
+        corrupt[corrupt.length - 8] ^= 1; // CRC
+        assertEquals("", decoder.decodeToString(b64(corrupt)));
+        assertEquals(3, decoder.failures(B64GzipDecoder.Failure.GZIP));
+
+        // 1 MiB of zeros compresses to about 1 KiB but is far over the 1 KiB cap
+        assertEquals("", decoder.decodeToString(b64(gzip(new byte[1 << 20]))));
+        assertEquals(1, decoder.failures(B64GzipDecoder.Failure.TOO_LARGE));
+
+        assertEquals("", decoder.decodeToString(null));
+        assertEquals(5, decoder.failures(B64GzipDecoder.Failure.BASE64) + decoder.failures(B64GzipDecoder.Failure.GZIP)
+                + decoder.failures(B64GzipDecoder.Failure.TOO_LARGE));
+    }
+
+    // Random bytes go into stored blocks, so around 16 KiB an input chunk ends right after the last
+    // output byte and the end of the stream only arrives with the next one
+    @Test
+    void aPayloadOfExactlyMaxBytesFits() throws Exception {
+        Random random = new Random(7);
+        for (int size = 16_360; size < 16_390; size++) {
+            B64GzipDecoder decoder = new B64GzipDecoder(size, 1);
+            byte[] exact = new byte[size];
+            random.nextBytes(exact);
+            assertEquals(Integer.valueOf(size), decoder.<Integer>decode(b64(gzipFlushed(exact)), (buf, off, len) -> len));
+            assertNull(decoder.<Integer>decode(b64(gzipFlushed(Arrays.copyOf(exact, size + 1))), (buf, off, len) -> len));
+            assertEquals(1, decoder.failures(B64GzipDecoder.Failure.TOO_LARGE));
+        }
+    }
+}
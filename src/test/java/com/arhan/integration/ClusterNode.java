@@ -0,0 +1,26 @@
+package com.arhan.integration;
+
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+// One replica for LeadershipTest, run in its own JVM: the poller and an outbox on the shared
+// directory, behind a FileLockLease. Args: shared dir, YouTrack API URL, webhook URL, heartbeat millis
+public class ClusterNode {
+    public static void main(String[] args) throws Exception {
+        Path shared = Paths.get(args[0]);
+        Execution execution = new ReactiveExecution();
+        WebhookSender sender = new WebhookSender(new DiscordClient(WebClient.create(), args[2]), 3, Duration.ofMillis(50));
+        Outbox outbox = new Outbox(Router.DEFAULT, sender, () -> new OutboundQueue(shared.resolve("outbox"), 2, 1 << 20), 5, execution);
+        Destinations destinations = Destinations.single(outbox);
+        NotificationPipeline pipeline = new NotificationPipeline(Router.DEFAULT, args[1], 2, destinations, execution, true);
+        NotificationScheduler scheduler = new NotificationScheduler(new YouTrackService(WebClient.create(args[1])), pipeline,
+                new NotificationScheduler.Settings(50, 20, 100_000, 1, 1, 1, 0, 10, false, 600, false, 0, 0, 0, shared, true));
+        Leadership leadership = new Leadership(new FileLockLease(shared), Long.parseLong(args[3]), List.of(destinations, scheduler));
+        leadership.begin();
+        Thread.sleep(Long.MAX_VALUE); // until killed
+    }
+}
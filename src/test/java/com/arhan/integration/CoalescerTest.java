@@ -0,0 +1,157 @@
+package com.arhan.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescerTest {
+    @TempDir Path dir;
+    private final Scheduler timer = Schedulers.newSingle("coalescer-test");
+    private final List<List<String>> flushed = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void stop() { timer.dispose(); }
+
+    private Coalescer<String> coalescer(long windowMillis, int maxEvents, int maxKeys) {
+        return new Coalescer<>(windowMillis, maxEvents, maxKeys, timer, flushed::add);
+    }
+
+    @Test
+    void groupsByKeyUntilTheWindowCloses() throws Exception {
+        Coalescer<String> c = coalescer(100, 100, 100);
+        c.offer("DEMO-1", "a");
+        c.offer("DEMO-2", "x");
+        c.offer("DEMO-1", "b");
+        assertTrue(flushed.isEmpty());
+        Thread.sleep(300);
+        assertEquals(2, flushed.size());
+        assertTrue(flushed.contains(List.of("a", "b")));
+        assertEquals(0, c.groups());
+    }
+
+    private void awaitFlushed(int groups) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (flushed.size() < groups && System.nanoTime() < deadline) Thread.sleep(5);
+    }
+
+    @Test
+    void flushesEarlyWhenAGroupIsFullOrTooManyKeysAreOpen() throws Exception {
+        Coalescer<String> c = coalescer(60_000, 3, 2);
+        c.offer("DEMO-1", "a");
+        c.offer("DEMO-1", "b");
+        c.offer("DEMO-1", "c");
+        awaitFlushed(1);
+        assertEquals(List.of(List.of("a", "b", "c")), flushed);
+
+        c.offer("DEMO-2", "x");
+        c.offer("DEMO-3", "y");
+        c.offer("DEMO-4", "z"); // third key: DEMO-2 (earliest deadline) goes out
+        assertEquals(2, c.groups());
+        awaitFlushed(2);
+        assertEquals(List.of("x"), flushed.get(1));
+    }
+
+    @Test
+    void earlyFlushesRunOnTheTimerNotTheOfferingThread() throws Exception {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        Coalescer<String> c = new Coalescer<>(60_000, 2, 1, timer, items -> threads.add(Thread.currentThread().getName()));
+        c.offer("DEMO-1", "a");
+        c.offer("DEMO-1", "b"); // full
+        c.offer("DEMO-2", "x");
+        c.offer("DEMO-3", "y"); // one key too many
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (threads.size() < 2 && System.nanoTime() < deadline) Thread.sleep(5);
+        assertEquals(2, threads.size());
+        for (String t : threads) assertTrue(t.startsWith("coalescer-test"), t);
+    }
+
+    @Test
+    void concurrentNewKeysNeverOpenMoreThanMaxKeys() throws Exception {
+        List<String> out = new CopyOnWriteArrayList<>();
+        Coalescer<String> c = new Coalescer<>(60_000, 100, 10, timer, out::addAll);
+        Thread[] writers = new Thread[8];
+        int[] maxGroups = new int[writers.length];
+        for (int t = 0; t < writers.length; t++) {
+            int w = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    c.offer("DEMO-" + w + "-" + i, w + ":" + i);
+                    maxGroups[w] = Math.max(maxGroups[w], c.groups());
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread t : writers) t.join();
+        for (int m : maxGroups) assertTrue(m <= 10, m + " groups open");
+        c.flushAll();
+        // The timer may still be in the middle of an early flush
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (out.size() < 8000 && System.nanoTime() < deadline) Thread.sleep(5);
+        assertEquals(8000, out.size());
+        assertEquals(8000, new HashSet<>(out).size());
+    }
+
+    private static YtMetadata change(String from, String to, String comment) throws Exception {
+        return YtMetadata.parse("""
+                {"header":"Issue updated","issue":{"id":"DEMO-5","summary":"Bulk edit"},
+                 "change":{"author":{"login":"arhan"},"humanReadableTimeStamp":"%s",
+                   "events":[{"category":"CUSTOM_FIELD","name":"State","removedValues":[{"name":"%s"}],"addedValues":[{"name":"%s"}]},
+                             {"category":"COMMENT","name":"","addedValues":[{"name":"%s"}]}]},
+                 "reason":{"savedSearchReasons":[{"name":"Assigned to me"}]}}""".formatted(to, from, to, comment));
+    }
+
+    @Test
+    void mergedChangeShowsEveryStepAndComment() throws Exception {
+        YtMetadata merged = YtMetadata.merge(List.of(change("Open", "In Progress", "one"),
+                change("In Progress", "Review", "two"), change("Review", "Fixed", "three")));
+        String md = YtFormatter.render(merged, "https://team.youtrack.cloud", null);
+        assertTrue(md.contains("**Status:** Open → In Progress → Review → Fixed\n"), md);
+        assertTrue(md.contains("**Comment:** one\n**Comment:** two\n**Comment:** three"), md);
+        assertTrue(md.contains("_Issue updated by arhan at Fixed_"), md);
+        assertTrue(md.contains("the **Assigned to me** saved search"), md);
+    }
+
+    @Test
+    void bulkEditOfOneIssueIsQueuedAsFewMessages() throws Exception {
+        String oldHome = System.getProperty("user.home");
+        System.setProperty("user.home", Files.createDirectories(dir.resolve("home")).toString());
+        // Nothing listens on the webhook, so queued messages stay in the queue to be counted
+        DiscordClient discord = new DiscordClient(WebClient.create(), "http://localhost:1/hook");
+        NotificationPipeline pipeline = new NotificationPipeline(new WebhookSender(discord, 0, Duration.ofMillis(10)),
+                "https://team.youtrack.cloud/api", 2, 5, new OutboundQueue(dir.resolve("outbox"), 2, 1 << 20));
+        NotificationScheduler scheduler = new NotificationScheduler(new YouTrackService(WebClient.create()), pipeline,
+                50, 20, 1000, 30, 5, 300, 0.1, 60, false, 600, true, 200, 20, 100);
+        try {
+            // 45 notifications for 3 issues in one poll: 15 per issue, under maxEvents
+            List<Notification> storm = NotificationPipelineTest.backlog(45, 3);
+            assertEquals(45, scheduler.process(new ArrayList<>(storm)).block(Duration.ofSeconds(10)));
+            assertEquals(0, pipeline.pending());
+            // The same poll again before the window closes doesn't add anything
+            assertEquals(0, scheduler.process(new ArrayList<>(storm)).block(Duration.ofSeconds(10)));
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (pipeline.pending() < 3 && System.nanoTime() < deadline) Thread.sleep(10);
+            Thread.sleep(100);
+            assertEquals(3, pipeline.pending());
+            // Once flushed, everything is seen
+            assertEquals(0, scheduler.process(new ArrayList<>(storm)).block(Duration.ofSeconds(10)));
+        } finally {
+            scheduler.close();
+            pipeline.close();
+            System.setProperty("user.home", oldHome);
+        }
+    }
+}
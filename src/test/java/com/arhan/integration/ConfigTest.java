@@ -0,0 +1,78 @@
+package com.arhan.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The shared HTTP layer against local servers: a dead peer has to fail the poll, not hang it
+class ConfigTest {
+    private final Config config = new Config();
+    private final Config.HttpSettings settings =
+            new Config.HttpSettings(1000, 1, 1, 4, 1000, 30, 300, 30, 1 << 20, false);
+    private final LoopResources loops = config.httpLoops();
+    private final ConnectionProvider pool = config.httpPool(settings);
+    private final List<Socket> accepted = new ArrayList<>();
+    private DisposableServer server;
+
+    @AfterEach
+    void stop() throws Exception {
+        for (Socket s : accepted) s.close();
+        if (server != null) server.disposeNow();
+        pool.dispose();
+        loops.dispose();
+    }
+
+    private YouTrackService youtrack(int port) {
+        WebClient client = config.youtrackClient(settings, loops, pool, "http://localhost:" + port + "/api", "perm:test");
+        return new YouTrackService(client);
+    }
+
+    @Test
+    void pollFailsWhenTheServerNeverAnswers() throws Exception {
+        try (ServerSocket dead = new ServerSocket(0)) {
+            // Accepts the connection and then says nothing
+            Thread acceptor = new Thread(() -> {
+                try { accepted.add(dead.accept()); } catch (Exception ignore) {}
+            });
+            acceptor.start();
+
+            long start = System.nanoTime();
+            assertThrows(Exception.class, () -> youtrack(dead.getLocalPort()).fetchNotifications().block(Duration.ofSeconds(10)));
+            long tookMs = (System.nanoTime() - start) / 1_000_000;
+            assertTrue(tookMs < 5000, "timed out after " + tookMs + "ms");
+            acceptor.join(1000);
+        }
+    }
+
+    @Test
+    void asksForGzipAndDecompresses() {
+        AtomicReference<String> acceptEncoding = new AtomicReference<>();
+        String body = "[" + "{\"id\":\"2-1\",\"updated\":1000,\"metadata\":null,\"content\":null},".repeat(200)
+                + "{\"id\":\"2-2\",\"updated\":1001}]";
+        server = HttpServer.create().port(0).compress(true)
+                .route(r -> r.get("/api/users/notifications", (req, res) -> {
+                    acceptEncoding.set(req.requestHeaders().get("Accept-Encoding"));
+                    return res.header("Content-Type", "application/json").sendString(Mono.just(body)).then();
+                }))
+                .bindNow();
+
+        List<Notification> items = youtrack(server.port()).fetchNotifications().block(Duration.ofSeconds(10));
+        assertNotNull(acceptEncoding.get());
+        assertTrue(acceptEncoding.get().contains("gzip"), acceptEncoding.get());
+        assertEquals(201, items.size());
+    }
+}
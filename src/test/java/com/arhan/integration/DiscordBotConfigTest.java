@@ -0,0 +1,31 @@
+package com.arhan.integration;
+
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscordBotConfigTest {
+
+    // What Discord sends back for the registered commands, as JDA reads it
+    private static List<CommandData> roundTrip(List<CommandData> commands) {
+        return commands.stream().map(c -> CommandData.fromData(c.toData())).toList();
+    }
+
+    @Test
+    void unchangedCommandsAreNotUploadedAgain() {
+        assertTrue(DiscordBotConfig.sameCommands(roundTrip(DiscordBotConfig.commands()), DiscordBotConfig.commands()));
+    }
+
+    @Test
+    void changedOrMissingCommandsAreUploaded() {
+        List<CommandData> old = List.of(Commands.slash("youtrack", "Create a YouTrack issue")
+                .addOption(OptionType.STRING, "summary", "Issue summary", true));
+        assertFalse(DiscordBotConfig.sameCommands(roundTrip(old), DiscordBotConfig.commands()));
+        assertFalse(DiscordBotConfig.sameCommands(List.of(), DiscordBotConfig.commands()));
+    }
+}
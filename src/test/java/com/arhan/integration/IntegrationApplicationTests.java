@@ -1,13 +1,54 @@
 package com.arhan.integration;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
 
-@SpringBootTest
+import static org.junit.jupiter.api.Assertions.*;
+
+// Boots the whole context with dummy endpoints (nothing listens on port 1) and the state in
+// target/, so it runs without the env vars and catches beans Spring can't construct
+@SpringBootTest(properties = {
+        "youtrack.baseUrl=http://localhost:1/api",
+        "youtrack.token=test",
+        "youtrack.projectId=0-0",
+        "discord.webhookUrl=http://localhost:1/hook",
+        "state.dir=target/context-test-state",
+        "spring.devtools.restart.enabled=false"
+})
 class IntegrationApplicationTests {
 
+    @Autowired
+    private ApplicationContext context;
+
     @Test
     void contextLoads() {
     }
 
+    @Test
+    void issueIndexIsABean() {
+        assertEquals(1, context.getBeansOfType(IssueIndex.class).size());
+    }
+
+    @Test
+    void issueCreationQueueIsABean() {
+        assertEquals(1, context.getBeansOfType(IssueCreationQueue.class).size());
+    }
+
+    // On Boot's own registry, once each, reading the beans (not instances left over from other tests)
+    @Test
+    void gaugesAreOnTheBootRegistry() {
+        MeterRegistry registry = context.getBean(MeterRegistry.class);
+        assertEquals(1, registry.find("yt.issue.create.queued").gauges().size());
+        assertEquals(context.getBean(IssueCreationQueue.class).queued(), registry.get("yt.issue.create.queued").gauge().value());
+        assertEquals(context.getBean(IssueIndex.class).size(), registry.get("yt.index.issues").gauge().value());
+        assertEquals(1, registry.find("yt.outbox.pending").tag("destination", Router.DEFAULT).gauges().size());
+        assertFalse(Double.isNaN(registry.get("yt.leader").gauge().value()));
+        assertEquals(1, registry.find("yt.startup.first.poll").tag("source", Router.DEFAULT).gauges().size());
+        // No bot token in the test, so the bot never gets ready
+        assertTrue(Double.isNaN(registry.get("discord.bot.ready").gauge().value()));
+    }
+
 }
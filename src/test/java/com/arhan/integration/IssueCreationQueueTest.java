@@ -0,0 +1,179 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.requests.restaction.WebhookMessageCreateAction;
+import net.dv8tion.jda.api.requests.restaction.WebhookMessageEditAction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class IssueCreationQueueTest {
+    private static final ObjectMapper OM = new ObjectMapper();
+
+    private DisposableServer stub;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger posts = new AtomicInteger();
+    private final Map<String, Integer> createdPerSummary = new ConcurrentHashMap<>();
+    private final Set<String> failedOnce = ConcurrentHashMap.newKeySet();
+    private final List<String> channel = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void stop() { if (stub != null) stub.disposeNow(); }
+
+    // Stub YouTrack: takes 20ms per issue, and answers 503 the first time it sees a "flaky" summary.
+    // Summaries are counted normalized, since either of a double click's two spellings may win
+    private void startYouTrack() {
+        stub = HttpServer.create().port(0)
+                .route(r -> r.post("/api/issues", (req, res) -> req.receive().aggregate().asString(StandardCharsets.UTF_8)
+                        .flatMap(body -> {
+                            posts.incrementAndGet();
+                            int now = inFlight.incrementAndGet();
+                            maxInFlight.accumulateAndGet(now, Math::max);
+                            String summary;
+                            try { summary = OM.readTree(body).path("summary").asText(); }
+                            catch (Exception e) { summary = "?"; }
+                            String s = IssueCreationQueue.normalize(summary);
+                            return Mono.delay(Duration.ofMillis(20)).then(Mono.defer(() -> {
+                                inFlight.decrementAndGet();
+                                if (s.contains("flaky") && failedOnce.add(s)) return res.status(503).send().then();
+                                createdPerSummary.merge(s, 1, Integer::sum);
+                                return res.header("Content-Type", "application/json")
+                                        .sendString(Mono.just("{\"idReadable\":\"DEMO-" + createdPerSummary.size() + "\"}")).then();
+                            }));
+                        })))
+                .bindNow();
+    }
+
+    // A /youtrack create interaction whose reply edits land in replies
+    private SlashCommandInteractionEvent create(String user, String summary, List<String> replies) {
+        SlashCommandInteractionEvent event = mock(SlashCommandInteractionEvent.class, RETURNS_DEEP_STUBS);
+        when(event.getName()).thenReturn("youtrack");
+        when(event.getSubcommandName()).thenReturn("create");
+        OptionMapping option = mock(OptionMapping.class);
+        when(option.getAsString()).thenReturn(summary);
+        when(event.getOption("summary")).thenReturn(option);
+        when(event.getUser().getId()).thenReturn(user);
+        InteractionHook hook = mock(InteractionHook.class);
+        when(hook.editOriginal(anyString())).thenAnswer(inv -> {
+            replies.add(inv.getArgument(0));
+            return mock(WebhookMessageEditAction.class);
+        });
+        when(hook.sendMessage(anyString())).thenAnswer(inv -> {
+            channel.add(inv.getArgument(0));
+            return mock(WebhookMessageCreateAction.class, RETURNS_SELF);
+        });
+        when(event.getHook()).thenReturn(hook);
+        return event;
+    }
+
+    private static boolean answered(List<String> replies) {
+        for (String r : replies) {
+            if (r.startsWith("Created") || r.startsWith("Already created") || r.startsWith("Failed")) return true;
+        }
+        return false;
+    }
+
+    @Test
+    void burstOfCommandsCreatesEachIssueOnceWithBoundedConcurrency() throws Exception {
+        startYouTrack();
+        String base = "http://localhost:" + stub.port() + "/api";
+        IssueCreationQueue queue = new IssueCreationQueue(
+                summary -> new YouTrackService(WebClient.create(base)).createIssue(summary, "0-0"),
+                3, 1000, 10_000, 3, Duration.ofMillis(10));
+        SlashListener listener = new SlashListener(new YouTrackService(WebClient.create(base)), new IssueIndex(100), queue, base);
+
+        // 40 users x 5 summaries, one in ten flaky, and every user double-clicks two of theirs
+        List<SlashCommandInteractionEvent> events = new ArrayList<>();
+        List<List<String>> replies = new ArrayList<>();
+        for (int u = 0; u < 40; u++) {
+            for (int s = 0; s < 5; s++) {
+                String summary = "Issue " + s + " from user " + u + ((u * 5 + s) % 10 == 0 ? " flaky" : "");
+                int clicks = s < 2 ? 2 : 1;
+                for (int c = 0; c < clicks; c++) {
+                    List<String> r = new CopyOnWriteArrayList<>();
+                    replies.add(r);
+                    // The second click differs in case and spacing only
+                    events.add(create("user-" + u, c == 0 ? summary : "  " + summary.toUpperCase() + " ", r));
+                }
+            }
+        }
+
+        ExecutorService discord = Executors.newFixedThreadPool(8);
+        for (SlashCommandInteractionEvent e : events) discord.submit(() -> listener.onSlashCommandInteraction(e));
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!replies.stream().allMatch(IssueCreationQueueTest::answered) && System.nanoTime() < deadline) Thread.sleep(10);
+        discord.shutdown();
+        discord.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertTrue(replies.stream().allMatch(IssueCreationQueueTest::answered), "some interactions never got an answer");
+        assertEquals(200, createdPerSummary.size());
+        assertTrue(createdPerSummary.values().stream().allMatch(n -> n == 1), "an issue was created twice");
+        assertEquals(200 + failedOnce.size(), posts.get());
+        assertEquals(20, failedOnce.size()); // retried, not failed
+        assertTrue(maxInFlight.get() <= 3, maxInFlight.get() + " creations at once");
+        assertEquals(200, channel.size());
+        assertEquals(80, replies.stream().filter(r -> r.stream().anyMatch(m -> m.startsWith("Already created"))).count());
+        assertTrue(replies.stream().anyMatch(r -> r.stream().anyMatch(m -> m.startsWith("Queued, number "))));
+        assertEquals(0, queue.queued());
+    }
+
+    private static IssueCreationQueue.Feedback recorder(List<String> out) {
+        return new IssueCreationQueue.Feedback() {
+            @Override public void queued(int position) { out.add("queued " + position); }
+            @Override public void created(JsonNode issue, boolean first) { out.add("created " + first); }
+            @Override public void failed(Throwable err) { out.add("failed " + err.getClass().getSimpleName()); }
+        };
+    }
+
+    @Test
+    void fullQueueTurnsRequestsAwayAndClientErrorsAreNotRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        IssueCreationQueue stuck = new IssueCreationQueue(s -> Mono.never(), 1, 2, 10_000, 3, Duration.ofMillis(1));
+        List<String> seen = new ArrayList<>();
+        assertEquals(IssueCreationQueue.Submission.QUEUED, stuck.submit("u", "a", recorder(seen)));
+        assertEquals(IssueCreationQueue.Submission.QUEUED, stuck.submit("u", "b", recorder(seen)));
+        assertEquals(IssueCreationQueue.Submission.QUEUED, stuck.submit("u", "c", recorder(seen)));
+        assertEquals(IssueCreationQueue.Submission.JOINED, stuck.submit("u", "C", recorder(seen)));
+        assertEquals(IssueCreationQueue.Submission.REJECTED, stuck.submit("u", "d", recorder(seen)));
+        assertEquals(List.of("queued 0", "queued 1", "queued 2", "queued 2"), seen);
+
+        List<String> out = new ArrayList<>();
+        IssueCreationQueue rejecting = new IssueCreationQueue(s -> Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(WebClientResponseException.create(HttpStatus.BAD_REQUEST.value(), "Bad Request", null, null, null));
+        }), 1, 10, 10_000, 3, Duration.ofMillis(1));
+        rejecting.submit("u", "x", recorder(out));
+        assertEquals(1, calls.get());
+        assertEquals(List.of("queued 0", "failed BadRequest"), out);
+        // A failed request can be tried again straight away
+        assertEquals(IssueCreationQueue.Submission.QUEUED, rejecting.submit("u", "x", recorder(out)));
+        assertEquals(2, calls.get());
+    }
+}
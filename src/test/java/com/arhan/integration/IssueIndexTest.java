@@ -0,0 +1,129 @@
+package com.arhan.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IssueIndexTest {
+    @TempDir Path dir;
+    private DisposableServer stub;
+
+    @AfterEach
+    void stop() { if (stub != null) stub.disposeNow(); }
+
+    private static List<String> ids(List<IssueIndex.Issue> issues) {
+        return issues.stream().map(IssueIndex.Issue::id).toList();
+    }
+
+    @Test
+    void matchesEveryWordByPrefixNewestFirst() {
+        IssueIndex index = new IssueIndex(100);
+        index.put(new IssueIndex.Issue("DEMO-12", "Login button does nothing", "Open", 1));
+        index.put(new IssueIndex.Issue("DEMO-120", "Logout is slow", "In Progress", 2));
+        index.put(new IssueIndex.Issue("WEB-7", "Login page layout", "Fixed", 3));
+
+        assertEquals(List.of("WEB-7", "DEMO-120", "DEMO-12"), ids(index.search("lo", 10)));
+        assertEquals(List.of("WEB-7", "DEMO-12"), ids(index.search("Login", 10)));
+        assertEquals(List.of("DEMO-12"), ids(index.search("login butt", 10)));
+        assertEquals(List.of("DEMO-120"), ids(index.search("progress", 10)));
+        // The exact id goes first, other ids with that prefix follow
+        assertEquals(List.of("DEMO-12", "DEMO-120"), ids(index.search("DEMO-12", 10)));
+        assertEquals(List.of("WEB-7", "DEMO-120"), ids(index.search("", 2)));
+        assertTrue(index.search("nothing here", 10).isEmpty());
+    }
+
+    @Test
+    void leastRecentlyTouchedIssueIsEvictedWithItsWords() {
+        IssueIndex index = new IssueIndex(2);
+        index.put(new IssueIndex.Issue("DEMO-1", "Crash on start", "Open", 1));
+        index.put(new IssueIndex.Issue("DEMO-2", "Typo in footer", "Open", 2));
+        index.get("DEMO-1"); // touched, so DEMO-2 is the oldest now
+        index.put(new IssueIndex.Issue("DEMO-3", "Dark mode", "Open", 3));
+
+        assertEquals(2, index.size());
+        assertNull(index.get("DEMO-2"));
+        assertTrue(index.search("typo", 10).isEmpty());
+        assertEquals(List.of("DEMO-1"), ids(index.search("crash", 10)));
+    }
+
+    @Test
+    void searchingDoesNotKeepAnIssueFromBeingEvicted() {
+        IssueIndex index = new IssueIndex(2);
+        index.put(new IssueIndex.Issue("DEMO-1", "Crash on start", "Open", 1));
+        index.put(new IssueIndex.Issue("DEMO-2", "Typo in footer", "Open", 2));
+        assertEquals(List.of("DEMO-1"), ids(index.search("crash", 10)));
+        assertEquals(List.of("DEMO-1"), ids(index.search("DEMO-1", 1)));
+        index.put(new IssueIndex.Issue("DEMO-3", "Dark mode", "Open", 3));
+
+        assertNull(index.get("DEMO-1"));
+        assertEquals(List.of("DEMO-3", "DEMO-2"), ids(index.search("demo", 10)));
+    }
+
+    @Test
+    void updatesKeepKnownFieldsAndReplaceOldWords() {
+        IssueIndex index = new IssueIndex(10);
+        index.put(new IssueIndex.Issue("DEMO-5", "Old title", "Open", 1));
+        index.put(new IssueIndex.Issue("DEMO-5", "New title", null, 2));
+        assertEquals(new IssueIndex.Issue("DEMO-5", "New title", "Open", 2), index.get("demo-5"));
+        assertTrue(index.search("old", 10).isEmpty());
+        // Older news doesn't overwrite newer
+        index.put(new IssueIndex.Issue("DEMO-5", "Stale title", "Fixed", 1));
+        assertEquals("New title", index.get("DEMO-5").summary());
+    }
+
+    @Test
+    void formattedNotificationsAndSyncFillTheIndex() throws Exception {
+        AtomicReference<String> query = new AtomicReference<>();
+        stub = HttpServer.create().port(0)
+                .route(r -> r.get("/api/issues", (req, res) -> {
+                    query.set(req.uri());
+                    return res.header("Content-Type", "application/json").sendString(Mono.just("""
+                            [{"idReadable":"DEMO-40","summary":"Synced issue","updated":5000,
+                              "customFields":[{"name":"Priority","value":{"name":"Major"}},{"name":"State","value":{"name":"Submitted"}}]},
+                             {"idReadable":"DEMO-41","summary":"No state","updated":4000,"customFields":[{"name":"State","value":null}]}]""")).then();
+                }))
+                .bindNow();
+        YouTrackService youtrack = new YouTrackService(WebClient.create("http://localhost:" + stub.port() + "/api"));
+        DiscordClient discord = new DiscordClient(WebClient.create(), "http://localhost:1/hook");
+        NotificationPipeline pipeline = new NotificationPipeline(new WebhookSender(discord, 0, Duration.ofMillis(10)),
+                "https://team.youtrack.cloud/api", 2, 5, new OutboundQueue(dir, 1, 1 << 20));
+        try {
+            IssueIndex index = new IssueIndex(pipeline, youtrack, 100, 0, 50);
+            pipeline.render(NotificationPipelineTest.backlog(3, 3)).collectList().block(Duration.ofSeconds(10));
+            assertEquals(new IssueIndex.Issue("DEMO-2", "Synthetic issue", "Fixed", 1002), index.get("DEMO-2"));
+
+            assertEquals(2, index.sync().block(Duration.ofSeconds(10)));
+            assertTrue(query.get().contains("query=sort%20by%3A%20updated%20desc"), query.get());
+            assertEquals("Submitted", index.get("DEMO-40").state());
+            assertNull(index.get("DEMO-41").state());
+            assertEquals(List.of("DEMO-40"), ids(index.search("synced subm", 10)));
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    void suggestionsFromAFullIndexAreFast() {
+        IssueIndex index = new IssueIndex(5000);
+        String[] words = {"login", "crash", "layout", "export", "search", "billing", "upload", "profile"};
+        for (int i = 0; i < 5000; i++) {
+            index.put(new IssueIndex.Issue("DEMO-" + i, words[i % 8] + " issue " + words[(i / 8) % 8] + " " + i, i % 3 == 0 ? "Open" : "Fixed", i));
+        }
+        for (int i = 0; i < 200; i++) index.search("lo", 25); // warm up
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) index.search(i % 2 == 0 ? "log" : "demo-4", 25);
+        double micros = (System.nanoTime() - start) / 1000.0 / 1000;
+        assertTrue(micros < 50_000, micros + "us");
+    }
+}
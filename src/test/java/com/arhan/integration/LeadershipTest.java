@@ -0,0 +1,157 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Three replicas in their own JVMs share one directory: only the leader posts, and when it is
+// killed a standby takes over and carries on from the shared seen ids, watermark and queue
+class LeadershipTest {
+    private static final ObjectMapper OM = new ObjectMapper();
+    private static final Pattern SEQ = Pattern.compile("seq (\\d+)");
+    private static final int TOTAL = 300;
+    private static final long HEARTBEAT_MILLIS = 200;
+
+    @TempDir Path dir;
+    private DisposableServer youtrack;
+    private DisposableServer discord;
+    private final List<Process> nodes = new ArrayList<>();
+
+    // Notifications published so far, oldest first, and how often each seq reached Discord
+    private final List<String> published = new CopyOnWriteArrayList<>();
+    private final Map<Integer, AtomicInteger> posted = new ConcurrentHashMap<>();
+
+    @AfterEach
+    void stop() {
+        for (Process p : nodes) p.destroyForcibly();
+        if (youtrack != null) youtrack.disposeNow();
+        if (discord != null) discord.disposeNow();
+    }
+
+    private Mono<Void> notifications(HttpServerRequest req, HttpServerResponse res) {
+        Map<String, String> q = new HashMap<>();
+        for (String kv : req.uri().substring(req.uri().indexOf('?') + 1).split("&")) {
+            String[] p = kv.split("=", 2);
+            if (p.length == 2) q.put(p[0], p[1]);
+        }
+        int skip = Integer.parseInt(q.getOrDefault("$skip", "0"));
+        int top = Integer.parseInt(q.getOrDefault("$top", "50"));
+        List<String> newestFirst = new ArrayList<>(published);
+        Collections.reverse(newestFirst);
+        List<String> page = newestFirst.subList(Math.min(skip, newestFirst.size()), Math.min(skip + top, newestFirst.size()));
+        return res.header("Content-Type", "application/json").sendString(Mono.just("[" + String.join(",", page) + "]")).then();
+    }
+
+    private Mono<Void> hook(HttpServerRequest req, HttpServerResponse res) {
+        return req.receive().aggregate().asString(StandardCharsets.UTF_8).flatMap(body -> {
+            try {
+                for (JsonNode e : OM.readTree(body).path("embeds")) {
+                    Matcher m = SEQ.matcher(e.path("description").asText());
+                    if (m.find()) posted.computeIfAbsent(Integer.parseInt(m.group(1)), k -> new AtomicInteger()).incrementAndGet();
+                }
+            } catch (Exception ignore) {}
+            return res.status(204).send().then();
+        });
+    }
+
+    private Process node(int i) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process p = new ProcessBuilder(java, "-Xmx128m", "-XX:TieredStopAtLevel=1",
+                "-cp", System.getProperty("java.class.path"), ClusterNode.class.getName(),
+                dir.resolve("shared").toString(),
+                "http://localhost:" + youtrack.port() + "/api",
+                "http://localhost:" + discord.port() + "/hook",
+                Long.toString(HEARTBEAT_MILLIS))
+                .redirectErrorStream(true)
+                .redirectOutput(dir.resolve("node-" + i + ".log").toFile())
+                .start();
+        nodes.add(p);
+        return p;
+    }
+
+    private int leaderLines(int i) {
+        try {
+            return (int) Files.readAllLines(dir.resolve("node-" + i + ".log")).stream().filter(l -> l.startsWith("Leader now")).count();
+        } catch (Exception e) { return 0; }
+    }
+
+    private static boolean await(BooleanSupplier done, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!done.getAsBoolean()) {
+            if (System.nanoTime() > deadline) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private int leader() {
+        for (int i = 0; i < nodes.size(); i++) if (nodes.get(i).isAlive() && leaderLines(i) > 0) return i;
+        return -1;
+    }
+
+    @Test
+    void aStandbyTakesOverFromAKilledLeaderWithoutRepostingOrLosing() throws Exception {
+        List<Notification> backlog = NotificationPipelineTest.backlog(TOTAL, 7);
+        youtrack = HttpServer.create().port(0).route(r -> r.get("/api/users/notifications", this::notifications)).bindNow();
+        discord = HttpServer.create().port(0).route(r -> r.post("/hook", this::hook)).bindNow();
+
+        // One new notification every 20ms
+        Thread publisher = new Thread(() -> {
+            try {
+                for (Notification n : backlog) {
+                    published.add("{\"id\":\"" + n.id() + "\",\"updated\":" + System.currentTimeMillis()
+                            + ",\"metadata\":\"" + new String(n.metadata(), StandardCharsets.ISO_8859_1) + "\"}");
+                    Thread.sleep(20);
+                }
+            } catch (InterruptedException ignore) {}
+        });
+        for (int i = 0; i < 3; i++) node(i);
+        assertTrue(await(() -> leader() >= 0, Duration.ofSeconds(30)), "nobody became leader");
+        publisher.start();
+
+        assertTrue(await(() -> posted.size() >= 60, Duration.ofSeconds(30)), "the leader isn't posting");
+        int first = leader();
+        assertEquals(1, leaderLines(0) + leaderLines(1) + leaderLines(2), "more than one leader");
+
+        nodes.get(first).destroyForcibly().waitFor();
+        long killed = System.nanoTime();
+        assertTrue(await(() -> leader() >= 0, Duration.ofSeconds(10)), "no standby took over");
+        long takeoverMs = (System.nanoTime() - killed) / 1_000_000;
+
+        publisher.join();
+        assertTrue(await(() -> posted.size() == TOTAL, Duration.ofSeconds(30)), posted.size() + " of " + TOTAL + " posted");
+        Thread.sleep(500);
+
+        int duplicates = posted.values().stream().mapToInt(c -> c.get() - 1).sum();
+        assertEquals(2, leaderLines(0) + leaderLines(1) + leaderLines(2));
+        assertTrue(takeoverMs < 5000, takeoverMs + "ms");
+        // At least once: only the batches in flight at the kill (one per partition) can repeat
+        assertTrue(duplicates <= 2 * WebhookSender.MAX_EMBEDS, duplicates + " duplicates");
+    }
+}
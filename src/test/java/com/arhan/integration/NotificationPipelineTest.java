@@ -0,0 +1,131 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Catch-up of a synthetic backlog through the outbound queue against a local stub webhook
+class NotificationPipelineTest {
+    private static final ObjectMapper OM = new ObjectMapper();
+    private static final Pattern LINE = Pattern.compile("\\*\\*(DEMO-\\d+)\\*\\*.*\\*\\*Comment:\\*\\* seq (\\d+)", Pattern.DOTALL);
+
+    @TempDir Path dir;
+    private DisposableServer stub;
+    private final List<NotificationPipeline> pipelines = new ArrayList<>();
+    private final List<String> received = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void start() {
+        stub = HttpServer.create().port(0)
+                .route(r -> r.post("/hook", (req, res) -> req.receive().aggregate().asString().flatMap(body -> {
+                    try {
+                        for (JsonNode e : OM.readTree(body).path("embeds")) received.add(e.path("description").asText());
+                    } catch (Exception ignore) {}
+                    return res.status(204).send().then();
+                })))
+                .bindNow();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        for (NotificationPipeline p : pipelines) p.close();
+        stub.disposeNow();
+    }
+
+    static List<Notification> backlog(int count, int issues) throws Exception {
+        List<Notification> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String meta = """
+                    {"header":"Issue updated","issue":{"id":"DEMO-%d","summary":"Synthetic issue","description":"Generated for the pipeline test"},
+                     "change":{"author":{"login":"load"},"humanReadableTimeStamp":"now",
+                       "events":[{"category":"COMMENT","name":"","addedValues":[{"name":"seq %d"}]},
+                                 {"category":"CUSTOM_FIELD","name":"State","removedValues":[{"name":"Open"}],"addedValues":[{"name":"Fixed"}]}]},
+                     "reason":{"savedSearchReasons":[{"name":"Assigned to me"}]}}""".formatted(i % issues, i);
+            out.add(new Notification("2-" + i, 1000L + i, 0, b64gzip(meta), null));
+        }
+        return out;
+    }
+
+    static byte[] b64gzip(String s) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(bos)) { gz.write(s.getBytes(StandardCharsets.UTF_8)); }
+        return Base64.getEncoder().encode(bos.toByteArray());
+    }
+
+    private NotificationPipeline pipeline(int concurrency) throws Exception {
+        DiscordClient discord = new DiscordClient(WebClient.create(), "http://localhost:" + stub.port() + "/hook");
+        WebhookSender sender = new WebhookSender(discord, 3, Duration.ofMillis(10));
+        OutboundQueue queue = new OutboundQueue(Files.createTempDirectory(dir, "outbox"), 4, 1 << 20);
+        NotificationPipeline pipeline = new NotificationPipeline(sender, "https://team.youtrack.cloud/api", concurrency, 20, queue);
+        pipelines.add(pipeline);
+        return pipeline;
+    }
+
+    // Formats and queues the notifications, then waits for the stub to have received them all
+    private void deliver(NotificationPipeline pipeline, List<Notification> items, Duration timeout) throws Exception {
+        pipeline.enqueue(pipeline.render(items).collectList().block(timeout));
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (pipeline.pending() > 0 && System.nanoTime() < deadline) Thread.sleep(5);
+    }
+
+    @Test
+    void deliversEverythingOnceAndKeepsOrderPerIssue() throws Exception {
+        List<Notification> items = backlog(500, 17);
+        NotificationPipeline pipeline = pipeline(4);
+        deliver(pipeline, items, Duration.ofSeconds(30));
+
+        assertEquals(0, pipeline.pending());
+        assertInOrderPerIssue(500);
+    }
+
+    // Throughput by concurrency is measured in PipelineConcurrencyBenchmark (-Pbench); here only
+    // that every concurrency delivers everything once and in order
+    @Test
+    void keepsOrderPerIssueAtEveryConcurrency() throws Exception {
+        List<Notification> items = backlog(2000, 200);
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int concurrency : IntStream.of(1, cores / 2, cores).filter(c -> c > 0).distinct().toArray()) {
+            received.clear();
+            NotificationPipeline pipeline = pipeline(concurrency);
+            deliver(pipeline, items, Duration.ofMinutes(1));
+            assertEquals(0, pipeline.pending(), "concurrency " + concurrency);
+            assertInOrderPerIssue(items.size());
+        }
+    }
+
+    private void assertInOrderPerIssue(int expected) {
+        assertEquals(expected, received.size());
+        Map<String, Integer> last = new HashMap<>();
+        for (String md : received) {
+            Matcher m = LINE.matcher(md);
+            assertTrue(m.find(), md);
+            int seq = Integer.parseInt(m.group(2));
+            Integer prev = last.put(m.group(1), seq);
+            assertTrue(prev == null || prev < seq, m.group(1) + " went " + prev + " -> " + seq);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The poll loop's paging against a stub YouTrack, with its state in a temp dir: pages that shift
+// while they're fetched, backlogs deeper than poll.maxPages, and the watermark around the coalescing window
+class NotificationSchedulerTest {
+    private static final ObjectMapper OM = new ObjectMapper();
+    private static final Pattern SEQ = Pattern.compile("seq (\\d+)");
+    private static final int PAGE = 10;
+
+    @TempDir Path dir;
+    private DisposableServer youtrack;
+    private DisposableServer discord;
+    private NotificationPipeline pipeline;
+    private NotificationScheduler scheduler;
+
+    // Oldest first; each page fetch after the first can publish some more, like YouTrack does
+    // when notifications arrive while we page
+    private final List<Notification> backlog = new ArrayList<>();
+    private final List<String> published = new CopyOnWriteArrayList<>();
+    private volatile int publishPerDeeperPage;
+    private final List<Integer> received = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void start() throws Exception {
+        backlog.addAll(NotificationPipelineTest.backlog(200, 7));
+        youtrack = HttpServer.create().port(0).route(r -> r.get("/api/users/notifications", this::notifications)).bindNow();
+        discord = HttpServer.create().port(0).route(r -> r.post("/hook", (req, res) ->
+                req.receive().aggregate().asString(StandardCharsets.UTF_8).flatMap(body -> {
+                    try {
+                        for (JsonNode e : OM.readTree(body).path("embeds")) {
+                            Matcher m = SEQ.matcher(e.path("description").asText());
+                            if (m.find()) received.add(Integer.parseInt(m.group(1)));
+                        }
+                    } catch (Exception ignore) {}
+                    return res.status(204).send().then();
+                }))).bindNow();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        if (scheduler != null) scheduler.close();
+        if (pipeline != null) pipeline.close();
+        youtrack.disposeNow();
+        discord.disposeNow();
+    }
+
+    private synchronized void publish(int count) {
+        for (int i = 0; i < count && published.size() < backlog.size(); i++) {
+            Notification n = backlog.get(published.size());
+            published.add("{\"id\":\"" + n.id() + "\",\"updated\":" + n.timestamp()
+                    + ",\"metadata\":\"" + new String(n.metadata(), StandardCharsets.ISO_8859_1) + "\"}");
+        }
+    }
+
+    private Mono<Void> notifications(HttpServerRequest req, HttpServerResponse res) {
+        Map<String, String> q = new HashMap<>();
+        for (String kv : req.uri().substring(req.uri().indexOf('?') + 1).split("&")) {
+            String[] p = kv.split("=", 2);
+            if (p.length == 2) q.put(p[0], p[1]);
+        }
+        int skip = Integer.parseInt(q.getOrDefault("$skip", "0"));
+        int top = Integer.parseInt(q.getOrDefault("$top", "50"));
+        if (skip > 0) publish(publishPerDeeperPage);
+        List<String> page = new ArrayList<>();
+        synchronized (this) {
+            for (int i = published.size() - 1 - skip; i >= 0 && page.size() < top; i--) page.add(published.get(i));
+        }
+        return res.header("Content-Type", "application/json").sendString(Mono.just("[" + String.join(",", page) + "]")).then();
+    }
+
+    // A watermark from before the backlog, so the first poll pages instead of taking only the newest page
+    private void schedule(int maxPages) throws Exception {
+        Files.writeString(dir.resolve(".yt_watermark.txt"), "1 2-start");
+        DiscordClient client = new DiscordClient(WebClient.create(), "http://localhost:" + discord.port() + "/hook");
+        pipeline = new NotificationPipeline(new WebhookSender(client, 3, Duration.ofMillis(10)), "https://team.youtrack.cloud/api",
+                2, 5, new OutboundQueue(dir.resolve("outbox"), 2, 1 << 20));
+        scheduler = new NotificationScheduler(new YouTrackService(WebClient.create("http://localhost:" + youtrack.port() + "/api")),
+                pipeline, new NotificationScheduler.Settings(PAGE, maxPages, 10_000, 1, 1, 1, 0, 10, false, 600,
+                        false, 0, 0, 0, dir, false));
+        scheduler.start();
+    }
+
+    private static boolean await(BooleanSupplier done, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!done.getAsBoolean()) {
+            if (System.nanoTime() > deadline) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private long watermark() throws Exception {
+        return Long.parseLong(Files.readString(dir.resolve(".yt_watermark.txt")).trim().split(" ")[0]);
+    }
+
+    @Test
+    void aNotificationOnTwoShiftedPagesIsDeliveredOnce() throws Exception {
+        publish(35);
+        // Every deeper page sees 3 more on top, so it repeats the last 3 of the page before
+        publishPerDeeperPage = 3;
+        schedule(20);
+        assertTrue(await(() -> new HashSet<>(received).size() == published.size() && published.size() > 35, Duration.ofSeconds(20)),
+                received.size() + " of " + published.size());
+        Thread.sleep(1500); // another poll
+        assertEquals(new HashSet<>(received).size(), received.size(), "duplicates in " + received);
+    }
+
+    @Test
+    void aBacklogDeeperThanMaxPagesIsWalkedOverSeveralPollsWithoutAGap() throws Exception {
+        publish(95);
+        schedule(2); // 20 per poll
+        assertTrue(await(() -> received.size() >= 95, Duration.ofSeconds(30)), received.size() + " of 95");
+        assertEquals(95, new HashSet<>(received).size());
+        // Only moves to the newest once the walk has reached the old watermark
+        assertTrue(await(() -> {
+            try { return watermark() == backlog.get(94).timestamp(); }
+            catch (Exception e) { return false; }
+        }, Duration.ofSeconds(5)));
+
+        // Then it's back to the newest pages
+        publish(5);
+        assertTrue(await(() -> received.size() >= 100, Duration.ofSeconds(10)), received.size() + " of 100");
+        Thread.sleep(1500);
+        assertEquals(100, received.size());
+    }
+
+    @Test
+    void theWatermarkStopsJustBeforeWhatTheCoalescingWindowHolds() throws Exception {
+        Files.writeString(dir.resolve(".yt_watermark.txt"), "1 2-start");
+        DiscordClient client = new DiscordClient(WebClient.create(), "http://localhost:" + discord.port() + "/hook");
+        pipeline = new NotificationPipeline(new WebhookSender(client, 3, Duration.ofMillis(10)), "https://team.youtrack.cloud/api",
+                2, 5, new OutboundQueue(dir.resolve("outbox"), 2, 1 << 20));
+        // Not started, so only the process() calls below move the watermark; the window outlasts the test
+        scheduler = new NotificationScheduler(new YouTrackService(WebClient.create("http://localhost:" + youtrack.port() + "/api")),
+                pipeline, new NotificationScheduler.Settings(PAGE, 20, 10_000, 1, 1, 1, 0, 10, false, 600,
+                        true, 60_000, 100, 100, dir, false));
+        Notification held = new Notification("2-held", 2000, 0, backlog.get(0).metadata(), null);
+
+        scheduler.process(new ArrayList<>(List.of(plain("2-a", 1000), plain("2-b", 1001), held))).block();
+        assertEquals(1001, watermark());
+
+        // Still held: a late notification older than it is passed, a newer one isn't
+        scheduler.process(new ArrayList<>(List.of(plain("2-c", 1500), held, plain("2-d", 2500)))).block();
+        assertEquals(1500, watermark());
+    }
+
+    // A notification without metadata, so it's never coalesced
+    private static Notification plain(String id, long ts) throws Exception {
+        return new Notification(id, ts, 0, null, NotificationPipelineTest.b64gzip("plain " + id));
+    }
+}
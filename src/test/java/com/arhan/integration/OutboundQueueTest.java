@@ -0,0 +1,273 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundQueueTest {
+    private static final ObjectMapper OM = new ObjectMapper();
+
+    @TempDir Path dir;
+    private DisposableServer stub;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean discordUp = new AtomicBoolean(true);
+    private final AtomicInteger rejectWith = new AtomicInteger();
+
+    @AfterEach
+    void stop() { if (stub != null) stub.disposeNow(); }
+
+    private static NotificationPipeline.Rendered msg(int i, int issues) {
+        return new NotificationPipeline.Rendered("2-" + i, 1000L + i, "DEMO-" + (i % issues), null,
+                new DiscordClient.Embed("YouTrack notification", "seq " + i));
+    }
+
+    private static List<NotificationPipeline.Rendered> msgs(int from, int to, int issues) {
+        List<NotificationPipeline.Rendered> out = new ArrayList<>();
+        for (int i = from; i < to; i++) out.add(msg(i, issues));
+        return out;
+    }
+
+    @Test
+    void pendingMessagesSurviveReopenInOrder() throws Exception {
+        try (OutboundQueue q = new OutboundQueue(dir, 2, 1 << 20)) {
+            q.append(msgs(0, 20, 1)); // one issue -> one partition
+            int p = q.partitionOf(msg(0, 1));
+            List<OutboundQueue.Entry> first = q.read(p, 5);
+            assertEquals(List.of("2-0", "2-1", "2-2", "2-3", "2-4"), first.stream().map(e -> e.item().id()).toList());
+            q.ack(p, first.get(4).next());
+            assertEquals(15, q.pending());
+        }
+        try (OutboundQueue q = new OutboundQueue(dir, 2, 1 << 20)) {
+            assertEquals(15, q.pending());
+            int p = q.partitionOf(msg(0, 1));
+            assertEquals("2-5", q.read(p, 1).get(0).item().id());
+            assertEquals(msg(7, 1), q.read(p, 3).get(2).item());
+        }
+    }
+
+    @Test
+    void tornRecordAtTheEndIsCutOff() throws Exception {
+        int p;
+        try (OutboundQueue q = new OutboundQueue(dir, 1, 1 << 20)) {
+            q.append(msgs(0, 3, 1));
+            p = q.partitionOf(msg(0, 1));
+        }
+        // Crash half way through writing a record: length says 100 bytes, only a few made it
+        Path segment;
+        try (Stream<Path> s = Files.list(dir.resolve("p" + p))) {
+            segment = s.filter(f -> f.toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        Files.write(segment, new byte[]{0, 0, 0, 100, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        try (OutboundQueue q = new OutboundQueue(dir, 1, 1 << 20)) {
+            assertEquals(3, q.pending());
+            q.append(msgs(3, 4, 1));
+            assertEquals(List.of("2-0", "2-1", "2-2", "2-3"), q.read(p, 10).stream().map(e -> e.item().id()).toList());
+        }
+    }
+
+    @Test
+    void readsCarryOnAcrossSegmentsWhileAppendsAndAcksInterleave() throws Exception {
+        List<String> delivered = new ArrayList<>();
+        try (OutboundQueue q = new OutboundQueue(dir, 1, 256)) {
+            int appended = 0;
+            while (delivered.size() < 42) {
+                if (appended < 42) q.append(msgs(appended, appended += 3, 1));
+                List<OutboundQueue.Entry> batch = q.read(0, 4);
+                // Not acknowledged yet: the same batch again
+                assertEquals(batch, q.read(0, 4));
+                // Only part of it goes out, the rest comes first in the next read
+                List<OutboundQueue.Entry> sent = batch.subList(0, Math.min(batch.size(), 2));
+                sent.forEach(e -> delivered.add(e.item().id()));
+                q.ack(0, sent.get(sent.size() - 1).next());
+                assertEquals(appended - delivered.size(), q.pending());
+            }
+            assertTrue(q.read(0, 4).isEmpty());
+            assertEquals(1, segments(0));
+        }
+        assertEquals(msgs(0, 42, 1).stream().map(NotificationPipeline.Rendered::id).toList(), delivered);
+    }
+
+    @Test
+    void acknowledgedSegmentsAreDeleted() throws Exception {
+        try (OutboundQueue q = new OutboundQueue(dir, 1, 256)) {
+            for (int i = 0; i < 10; i++) q.append(msgs(i, i + 1, 1));
+            assertTrue(segments(0) > 2);
+            List<OutboundQueue.Entry> all = q.read(0, 100);
+            q.ack(0, all.get(all.size() - 1).next());
+            assertEquals(0, q.pending());
+            assertEquals(1, segments(0)); // the tail stays
+            List<String> replayed = new ArrayList<>();
+            q.replay(r -> replayed.add(r.id()));
+            assertTrue(replayed.contains("2-9"));
+        }
+    }
+
+    @Test
+    void recordsSkippedInACorruptSegmentStopCountingAsPending() throws Exception {
+        try (OutboundQueue q = new OutboundQueue(dir, 1, 256)) {
+            for (int i = 0; i < 10; i++) q.append(msgs(i, i + 1, 1));
+            assertTrue(segments(0) > 2);
+            assertEquals(10, q.pending());
+            // A flipped byte in the first record: the rest of the oldest segment can't be read
+            Path oldest;
+            try (Stream<Path> s = Files.list(dir.resolve("p0"))) {
+                oldest = s.filter(f -> f.toString().endsWith(".seg")).sorted().findFirst().orElseThrow();
+            }
+            byte[] bytes = Files.readAllBytes(oldest);
+            bytes[10] ^= 1;
+            Files.write(oldest, bytes);
+
+            List<OutboundQueue.Entry> readable = q.read(0, 100);
+            assertTrue(readable.size() < 10);
+            assertEquals(readable.size(), q.pending());
+            q.ack(0, readable.get(readable.size() - 1).next());
+            assertEquals(0, q.pending());
+        }
+    }
+
+    private long segments(int partition) throws Exception {
+        try (Stream<Path> s = Files.list(dir.resolve("p" + partition))) {
+            return s.filter(f -> f.toString().endsWith(".seg")).count();
+        }
+    }
+
+    // Stub webhook that answers 503 while discordUp is false, and rejectWith when that's set
+    private void startStub(Duration latency) {
+        stub = HttpServer.create().port(0)
+                .route(r -> r.post("/hook", (req, res) -> req.receive().aggregate().asString(StandardCharsets.UTF_8)
+                        .delayElement(latency)
+                        .flatMap(body -> {
+                            if (!discordUp.get()) return res.status(503).send().then();
+                            if (rejectWith.get() != 0) return res.status(rejectWith.get()).send().then();
+                            try {
+                                for (JsonNode e : OM.readTree(body).path("embeds")) received.add(e.path("description").asText());
+                            } catch (Exception ignore) {}
+                            return res.status(204).send().then();
+                        })))
+                .bindNow();
+    }
+
+    private NotificationPipeline pipeline() throws Exception {
+        DiscordClient discord = new DiscordClient(WebClient.create(), "http://localhost:" + stub.port() + "/hook");
+        return new NotificationPipeline(new WebhookSender(discord, 0, Duration.ofMillis(10)),
+                "https://team.youtrack.cloud/api", 2, 5, new OutboundQueue(dir, 4, 4096));
+    }
+
+    private static void await(BooleanSupplier done, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!done.getAsBoolean() && System.nanoTime() < deadline) Thread.sleep(5);
+    }
+
+    @Test
+    void killedMidDeliveryResumesAfterRestartWithoutLosingMessages() throws Exception {
+        startStub(Duration.ofMillis(20));
+        NotificationPipeline first = pipeline();
+        first.enqueue(msgs(0, 300, 7));
+        await(() -> received.size() >= 60, Duration.ofSeconds(10));
+        first.close(); // "kill": in-flight posts are dropped without being acknowledged
+        int beforeKill = received.size();
+        assertTrue(beforeKill < 300, "everything went out before the kill");
+
+        NotificationPipeline second = pipeline();
+        try {
+            await(() -> second.pending() == 0, Duration.ofSeconds(20));
+        } finally {
+            second.close();
+        }
+
+        Set<String> unique = new HashSet<>(received);
+        assertEquals(300, unique.size());
+        // At least once: only batches that were in flight at the kill (one per partition) can repeat
+        assertTrue(received.size() - unique.size() <= 4 * WebhookSender.MAX_EMBEDS,
+                (received.size() - unique.size()) + " duplicates");
+    }
+
+    @Test
+    void queuedWhileDiscordIsDownIsDeliveredAfterRestartAndNotQueuedAgain() throws Exception {
+        startStub(Duration.ZERO);
+        discordUp.set(false);
+        String oldHome = System.getProperty("user.home");
+        System.setProperty("user.home", dir.resolve("home").toString());
+        Files.createDirectories(dir.resolve("home"));
+        try {
+            List<Notification> polled = NotificationPipelineTest.backlog(20, 3);
+
+            NotificationPipeline first = pipeline();
+            NotificationScheduler scheduler = new NotificationScheduler(new YouTrackService(WebClient.create()), first,
+                    50, 20, 1000, 30, 5, 300, 0.1, 60, false, 600, false, 0, 0, 0);
+            assertEquals(20, scheduler.process(new ArrayList<>(polled)).block(Duration.ofSeconds(10)));
+            assertEquals(20, first.pending());
+            scheduler.close();
+            first.close();
+            assertTrue(received.isEmpty());
+
+            discordUp.set(true);
+            NotificationPipeline second = pipeline();
+            NotificationScheduler restarted = new NotificationScheduler(new YouTrackService(WebClient.create()), second,
+                    50, 20, 1000, 30, 5, 300, 0.1, 60, false, 600, false, 0, 0, 0);
+            try {
+                await(() -> second.pending() == 0, Duration.ofSeconds(20));
+                // The same poll again: everything is already seen
+                assertEquals(0, restarted.process(new ArrayList<>(polled)).block(Duration.ofSeconds(10)));
+                Thread.sleep(100);
+            } finally {
+                restarted.close();
+                second.close();
+            }
+            assertEquals(20, received.size());
+            assertEquals(20, new HashSet<>(received).size());
+        } finally {
+            System.setProperty("user.home", oldHome);
+        }
+    }
+
+    @Test
+    void aRefusedWebhookKeepsMessagesQueuedButMalformedOnesAreDropped() throws Exception {
+        startStub(Duration.ZERO);
+        DiscordClient discord = new DiscordClient(WebClient.create(), "http://localhost:" + stub.port() + "/hook");
+        Outbox outbox = new Outbox(Router.DEFAULT, new WebhookSender(discord, 0, Duration.ofMillis(10)),
+                new OutboundQueue(dir, 1, 1 << 20), 5, new ReactiveExecution());
+        try {
+            // Deleted webhook: nothing is lost while someone fixes it
+            rejectWith.set(404);
+            outbox.enqueue(msgs(0, 3, 1));
+            Thread.sleep(1500);
+            assertEquals(3, outbox.pending());
+            rejectWith.set(0);
+            await(() -> outbox.pending() == 0, Duration.ofSeconds(10));
+            assertEquals(List.of("seq 0", "seq 1", "seq 2"), received);
+
+            // Discord will never take these: dropped so the partition moves on
+            rejectWith.set(400);
+            outbox.enqueue(msgs(3, 6, 1));
+            await(() -> outbox.pending() == 0, Duration.ofSeconds(5));
+            assertEquals(0, outbox.pending());
+            assertEquals(3, received.size());
+        } finally {
+            outbox.close();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouterTest {
+    private static final ObjectMapper OM = new ObjectMapper();
+    private static final List<String> NAMES = List.of("default", "backend", "web", "oncall");
+
+    @TempDir Path dir;
+    private DisposableServer stub;
+
+    @AfterEach
+    void stop() { if (stub != null) stub.disposeNow(); }
+
+    private static RoutingProperties.Rule rule(List<String> sources, List<String> projects, List<String> tags,
+                                               List<String> searches, List<String> priorities, String... to) {
+        return new RoutingProperties.Rule(sources, projects, tags, searches, priorities, List.of(to));
+    }
+
+    private static YtMetadata meta(String issue, List<String> tags, List<String> searches, String priority) {
+        List<YtMetadata.Event> events = new ArrayList<>();
+        events.add(new YtMetadata.Event("COMMENT", "", null, "hello"));
+        if (priority != null) events.add(new YtMetadata.Event("CUSTOM_FIELD", "Priority", "Normal", priority));
+        YtMetadata.Person author = new YtMetadata.Person("Load", "load");
+        return new YtMetadata("Issue updated", new YtMetadata.Issue(issue, "Summary", null, null),
+                new YtMetadata.Change(author, "now", 0, events), author, new YtMetadata.Reason(false, searches, tags));
+    }
+
+    private static List<String> names(Router router, BitSet to) {
+        return to.stream().mapToObj(router::destination).toList();
+    }
+
+    @Test
+    void everyMatchingRuleAddsItsDestinationsAndTheRestGoToDefault() {
+        Router router = new Router(NAMES, List.of(
+                rule(null, List.of("API", "db"), null, null, null, "backend"),
+                rule(null, List.of("WEB"), List.of("ui"), null, null, "web"),
+                rule(null, null, null, null, List.of("Critical", "Show-stopper"), "oncall", "default"),
+                rule(List.of("partner"), null, null, List.of("Assigned to me"), null, "backend")));
+
+        assertEquals(List.of("backend"), names(router, router.route("default", meta("API-1", null, null, null))));
+        assertEquals(List.of("backend"), names(router, router.route("default", meta("DB-7", null, null, null))));
+        // Every attribute of a rule has to match
+        assertEquals(List.of("web"), names(router, router.route("default", meta("WEB-3", List.of("UI"), null, null))));
+        assertEquals(List.of("default"), names(router, router.route("default", meta("WEB-3", List.of("perf"), null, null))));
+        // Several rules, one message
+        assertEquals(List.of("default", "backend", "oncall"),
+                names(router, router.route("default", meta("API-2", null, null, "critical"))));
+        // Source and saved search
+        assertEquals(List.of("backend"), names(router, router.route("partner", meta("X-1", null, List.of("Assigned to me"), null))));
+        assertEquals(List.of("default"), names(router, router.route("default", meta("X-1", null, List.of("Assigned to me"), null))));
+        // Undecodable: nothing to match on but the source
+        assertEquals(List.of("default"), names(router, router.route("partner", null)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new Router(NAMES, List.of(rule(null, List.of("API"), null, null, null, "nowhere"))));
+        assertEquals(List.of("default"), names(new Router(List.of("default"), List.of()),
+                new Router(List.of("default"), List.of()).route("default", meta("API-1", null, null, null))));
+    }
+
+    @Test
+    void routingCostStaysFlatAsRulesGrow() {
+        double few = microsPerRoute(10);
+        double many = microsPerRoute(10_000);
+        assertTrue(many < 100, "10 rules: " + few + "us, 10000 rules: " + many + "us");
+    }
+
+    // One rule per project, each message matches one of them
+    private static double microsPerRoute(int rules) {
+        List<RoutingProperties.Rule> list = new ArrayList<>();
+        for (int i = 0; i < rules; i++) list.add(rule(null, List.of("P" + i), null, null, null, NAMES.get(1 + i % 3)));
+        Router router = new Router(NAMES, list);
+        YtMetadata[] metas = new YtMetadata[64];
+        for (int i = 0; i < metas.length; i++) metas[i] = meta("P" + (i * 31 % rules) + "-" + i, List.of("ui"), List.of("Assigned to me"), null);
+        for (int i = 0; i < 20_000; i++) router.route("default", metas[i % metas.length]); // warm up
+        long start = System.nanoTime();
+        int n = 100_000;
+        for (int i = 0; i < n; i++) assertEquals(1, router.route("default", metas[i % metas.length]).cardinality());
+        return (System.nanoTime() - start) / 1000.0 / n;
+    }
+
+    @Test
+    void aSlowChannelDoesNotHoldUpTheOthers() throws Exception {
+        List<String> fast = new CopyOnWriteArrayList<>();
+        List<String> slow = new CopyOnWriteArrayList<>();
+        stub = HttpServer.create().port(0)
+                .route(r -> r
+                        .post("/fast", (req, res) -> req.receive().aggregate().asString(StandardCharsets.UTF_8)
+                                .flatMap(body -> {
+                                    record(body, fast);
+                                    return res.status(204).send().then();
+                                }))
+                        .post("/slow", (req, res) -> req.receive().aggregate().asString(StandardCharsets.UTF_8)
+                                .flatMap(body -> Mono.delay(Duration.ofSeconds(2)).then(Mono.defer(() -> {
+                                    record(body, slow);
+                                    return res.status(204).send().then();
+                                })))))
+                .bindNow();
+        String base = "http://localhost:" + stub.port();
+        Router router = new Router(List.of("default", "slow"), List.of(rule(null, null, null, null, null, "default", "slow")));
+        Destinations destinations = new Destinations(List.of(outbox("default", base + "/fast", "fast"), outbox("slow", base + "/slow", "slow")),
+                router, dir.resolve("journal"));
+        NotificationPipeline pipeline = new NotificationPipeline("default", "https://team.youtrack.cloud/api", 2,
+                destinations, new ReactiveExecution(), true);
+        try {
+            pipeline.enqueue(pipeline.render(NotificationPipelineTest.backlog(100, 10)).collectList().block(Duration.ofSeconds(10)));
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (fast.size() < 100 && System.nanoTime() < deadline) Thread.sleep(5);
+            assertEquals(100, fast.size());
+            assertTrue(slow.size() < 100, "the slow channel finished first");
+            assertTrue(pipeline.pending() > 0);
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    void aCrashBetweenTwoOutboxesIsMadeUpForOnTheNextStart() throws Exception {
+        // Nothing listens on the webhooks, so everything stays queued to be counted
+        Router router = new Router(List.of("default", "oncall"), List.of(rule(null, null, null, null, null, "default", "oncall")));
+        List<NotificationPipeline.Rendered> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            batch.add(new NotificationPipeline.Rendered("2-" + i, 1000L + i, "DEMO-" + i, null,
+                    new DiscordClient.Embed("YouTrack notification", "seq " + i)));
+        }
+
+        // "Crash" after the first append: the second outbox isn't open, so its append fails
+        Outbox first = outbox("default", "http://localhost:1/a", "a");
+        Outbox unopened = new Outbox("oncall", new WebhookSender(new DiscordClient(WebClient.create(), "http://localhost:1/b"), 0,
+                Duration.ofMillis(10)), () -> new OutboundQueue(dir.resolve("b"), 4, 1 << 20), 5, new ReactiveExecution());
+        Destinations crashed = new Destinations(List.of(first, unopened), router, dir.resolve("journal"));
+        assertThrows(IllegalStateException.class, () -> crashed.enqueue(batch));
+        assertEquals(5, first.pending());
+        first.close();
+
+        Destinations restarted = new Destinations(List.of(outbox("default", "http://localhost:1/a", "a"),
+                outbox("oncall", "http://localhost:1/b", "b")), router, dir.resolve("journal"));
+        try {
+            restarted.start();
+            assertEquals(10, restarted.pending()); // the missing five, and none twice
+            assertFalse(Files.exists(dir.resolve("journal")));
+            restarted.close();
+            restarted.start();
+            assertEquals(10, restarted.pending());
+        } finally {
+            restarted.close();
+        }
+    }
+
+    private Outbox outbox(String name, String url, String queueDir) throws Exception {
+        DiscordClient discord = new DiscordClient(WebClient.create(), url);
+        return new Outbox(name, new WebhookSender(discord, 0, Duration.ofMillis(10)),
+                new OutboundQueue(dir.resolve(queueDir), 4, 1 << 20), 5, new ReactiveExecution());
+    }
+
+    private static void record(String body, List<String> into) {
+        try {
+            for (JsonNode e : OM.readTree(body).path("embeds")) into.add(e.path("description").asText());
+        } catch (Exception ignore) {}
+    }
+}
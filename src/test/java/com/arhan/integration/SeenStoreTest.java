@@ -0,0 +1,171 @@
+package com.arhan.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeenStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void idsSurviveReopen() throws Exception {
+        Path log = dir.resolve("seen.log");
+        try (SeenStore store = new SeenStore(log, 100)) {
+            store.add("2-1", 10);
+            store.add("2-2", 20);
+        }
+        try (SeenStore store = new SeenStore(log, 100)) {
+            assertTrue(store.contains("2-1"));
+            assertTrue(store.contains("2-2"));
+            assertFalse(store.contains("2-3"));
+        }
+    }
+
+    @Test
+    void tornLastLineIsDroppedOnRecovery() throws Exception {
+        Path log = dir.resolve("seen.log");
+        try (SeenStore store = new SeenStore(log, 100)) {
+            store.add("2-1", 10);
+        }
+        Files.writeString(log, "2-2\t2", StandardOpenOption.APPEND); // crash mid-write
+
+        try (SeenStore store = new SeenStore(log, 100)) {
+            assertTrue(store.contains("2-1"));
+            assertFalse(store.contains("2-2"));
+            store.add("2-3", 30);
+        }
+        try (SeenStore store = new SeenStore(log, 100)) {
+            assertTrue(store.contains("2-3"));
+        }
+    }
+
+    @Test
+    void evictsBelowWatermarkAndByCount() throws Exception {
+        try (SeenStore store = new SeenStore(dir.resolve("seen.log"), 3)) {
+            for (int i = 1; i <= 4; i++) store.add("2-" + i, i * 10);
+            assertFalse(store.contains("2-1"));
+            assertEquals(3, store.size());
+
+            store.evictBefore(30);
+            assertFalse(store.contains("2-2"));
+            assertTrue(store.contains("2-3"));
+            assertTrue(store.contains("2-4"));
+        }
+    }
+
+    @Test
+    void compactionKeepsLogBoundedByLiveIds() throws Exception {
+        Path log = dir.resolve("seen.log");
+        try (SeenStore store = new SeenStore(log, 100_000)) {
+            for (int i = 0; i < 50_000; i++) {
+                store.add("2-" + i, i);
+                if (i % 100 == 99) { store.evictBefore(i - 50); store.flush(); }
+            }
+        }
+        List<String> lines = Files.readAllLines(log);
+        assertTrue(lines.size() < 2_000, "log has " + lines.size() + " lines");
+        try (SeenStore store = new SeenStore(log, 100_000)) {
+            assertTrue(store.contains("2-49999"));
+            assertFalse(store.contains("2-100"));
+        }
+    }
+
+    @Test
+    void evictsByTimestampNotInsertionOrder() throws Exception {
+        try (SeenStore store = new SeenStore(dir.resolve("seen.log"), 100)) {
+            store.add("push-key", 5_000); // a pushed change, stamped on arrival
+            store.add("2-1", 10);
+            store.add("2-2", 20);
+            store.evictBefore(15);
+            assertTrue(store.contains("push-key"));
+            assertFalse(store.contains("2-1"));
+            assertTrue(store.contains("2-2"));
+            store.evictBefore(6_000);
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    void importsLegacyIdFile() throws Exception {
+        Path legacy = dir.resolve("legacy.txt");
+        Files.write(legacy, List.of("2-7", "2-8"));
+        try (SeenStore store = new SeenStore(dir.resolve("seen.log"), 100)) {
+            store.importLegacy(legacy, 500);
+            // Kept until the watermark moves past the one they were imported at
+            store.evictBefore(500);
+            assertTrue(store.contains("2-7"));
+            assertTrue(store.contains("2-8"));
+            store.evictBefore(501);
+            assertFalse(store.contains("2-7"));
+        }
+    }
+
+    @Test
+    void overflowDropsTheOldestTimestampsNotTheFirstAdded() throws Exception {
+        try (SeenStore store = new SeenStore(dir.resolve("seen.log"), 3)) {
+            store.add("push-key", 5_000); // added first, but the newest
+            store.add("2-1", 10);
+            store.add("2-2", 20);
+            store.add("2-3", 30);
+            assertEquals(3, store.size());
+            assertTrue(store.contains("push-key"));
+            assertFalse(store.contains("2-1"));
+        }
+    }
+
+    @Test
+    void anIdAddedAgainKeepsTheNewTimestampAcrossReopen() throws Exception {
+        Path log = dir.resolve("seen.log");
+        try (SeenStore store = new SeenStore(log, 100)) {
+            store.add("2-1", 10);
+            store.add("2-2", 20);
+            store.add("2-1", 50);
+            store.evictBefore(30);
+            assertTrue(store.contains("2-1"));
+            assertFalse(store.contains("2-2"));
+        }
+        try (SeenStore store = new SeenStore(log, 100)) {
+            store.evictBefore(40);
+            assertTrue(store.contains("2-1"));
+            store.evictBefore(51);
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    void matchesAMapThroughAddsEvictionsAndOverflow() throws Exception {
+        Random rnd = new Random(7);
+        Map<String, Long> expected = new HashMap<>();
+        try (SeenStore store = new SeenStore(dir.resolve("seen.log"), 1_000_000)) {
+            long watermark = 0;
+            for (int round = 0; round < 200; round++) {
+                for (int i = 0; i < 500; i++) {
+                    String id = "2-" + rnd.nextInt(20_000);
+                    long ts = watermark + rnd.nextInt(1_000);
+                    store.add(id, ts);
+                    expected.put(id, ts);
+                }
+                watermark += 100;
+                store.evictBefore(watermark);
+                long w = watermark;
+                expected.values().removeIf(ts -> ts < w);
+                assertEquals(expected.size(), store.size());
+                for (int i = 0; i < 1_000; i++) {
+                    String id = "2-" + rnd.nextInt(20_000);
+                    assertEquals(expected.containsKey(id), store.contains(id), id);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.arhan.integration;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the sender against a local stub webhook that answers with scripted statuses
+class WebhookSenderTest {
+
+    private DisposableServer server;
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @AfterEach
+    void stop() { if (server != null) server.disposeNow(); }
+
+    private WebhookSender senderFor(int... statuses) {
+        stop();
+        server = HttpServer.create().port(0)
+                .route(r -> r.post("/hook", (req, res) -> req.receive().aggregate().asString().flatMap(body -> {
+                    bodies.add(body);
+                    int n = calls.getAndIncrement();
+                    int status = n < statuses.length ? statuses[n] : 204;
+                    if (status == 429) {
+                        return res.status(429).header("Content-Type", "application/json")
+                                .sendString(Mono.just("{\"message\":\"You are being rate limited.\",\"retry_after\":0.2,\"global\":false}")).then();
+                    }
+                    return res.status(status)
+                            .header("X-RateLimit-Remaining", "4")
+                            .header("X-RateLimit-Reset-After", "1.0")
+                            .send().then();
+                })))
+                .bindNow();
+        DiscordClient discord = new DiscordClient(WebClient.create(), "http://localhost:" + server.port() + "/hook");
+        return new WebhookSender(discord, 3, Duration.ofMillis(10));
+    }
+
+    private static List<DiscordClient.Embed> embeds(int n, int size) {
+        List<DiscordClient.Embed> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) out.add(new DiscordClient.Embed("YouTrack notification", "x".repeat(size)));
+        return out;
+    }
+
+    @Test
+    void packsByEmbedCountAndTotalSize() {
+        assertEquals(List.of(10, 10, 5), WebhookSender.pack(embeds(25, 10), e -> e).stream().map(List::size).toList());
+        // 2000 chars each: only two fit under the 6000 character message limit
+        assertEquals(List.of(2, 2, 1), WebhookSender.pack(embeds(5, 2000), e -> e).stream().map(List::size).toList());
+    }
+
+    @Test
+    void waitsOutRateLimitAndRetries() {
+        WebhookSender sender = senderFor(429, 204);
+        SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+        Metrics.addRegistry(metrics);
+        try {
+            long start = System.nanoTime();
+            sender.send(embeds(10, 10)).block(Duration.ofSeconds(5));
+            long tookMs = (System.nanoTime() - start) / 1_000_000;
+
+            assertEquals(2, calls.get());
+            assertTrue(tookMs >= 200, "retried after " + tookMs + "ms");
+            assertTrue(bodies.get(1).contains("\"embeds\""));
+            assertEquals(1, metrics.get("discord.send").tag("status", "429").timer().count());
+            assertEquals(1, metrics.get("discord.send").tag("status", "204").timer().count());
+        } finally {
+            Metrics.removeRegistry(metrics);
+        }
+    }
+
+    @Test
+    void retriesTransientErrorsThenGivesUp() {
+        WebhookSender sender = senderFor(502, 503, 204);
+        sender.send(embeds(1, 10)).block(Duration.ofSeconds(5));
+        assertEquals(3, calls.get());
+
+        calls.set(0);
+        WebhookSender failing = senderFor(500, 500, 500, 500, 500);
+        assertThrows(RuntimeException.class, () -> failing.send(embeds(1, 10)).block(Duration.ofSeconds(5)));
+        assertEquals(4, calls.get()); // first try + 3 retries
+    }
+
+    @Test
+    void clientErrorsAreNotRetried() {
+        WebhookSender sender = senderFor(400);
+        WebhookSender.Rejected bad = assertThrows(WebhookSender.Rejected.class, () -> sender.send(embeds(1, 10)).block(Duration.ofSeconds(5)));
+        assertEquals(400, bad.status);
+        assertTrue(bad.badMessage());
+        assertEquals(1, calls.get());
+
+        calls.set(0);
+        WebhookSender deleted = senderFor(404);
+        WebhookSender.Rejected gone = assertThrows(WebhookSender.Rejected.class, () -> deleted.send(embeds(1, 10)).block(Duration.ofSeconds(5)));
+        assertFalse(gone.badMessage());
+        assertEquals(1, calls.get());
+    }
+
+    private static HttpHeaders limits(int limit, int remaining, double resetAfter) {
+        HttpHeaders h = new HttpHeaders();
+        h.add("X-RateLimit-Limit", Integer.toString(limit));
+        h.add("X-RateLimit-Remaining", Integer.toString(remaining));
+        h.add("X-RateLimit-Reset-After", Double.toString(resetAfter));
+        return h;
+    }
+
+    @Test
+    void everyRequestTakesFromTheBucketAlsoAfterAReset() throws Exception {
+        WebhookSender.Bucket bucket = new WebhookSender.Bucket();
+        WebhookSender.Bucket.Permit first = bucket.tryAcquire();
+        assertEquals(Duration.ZERO, first.delay());
+        // Until Discord has answered, one at a time
+        assertNotEquals(Duration.ZERO, bucket.tryAcquire().delay());
+        bucket.update(first.window(), limits(2, 1, 0.05));
+
+        Thread.sleep(80);
+        // A new window: two requests, not one per lane
+        assertEquals(Duration.ZERO, bucket.tryAcquire().delay());
+        assertEquals(Duration.ZERO, bucket.tryAcquire().delay());
+        assertNotEquals(Duration.ZERO, bucket.tryAcquire().delay());
+    }
+
+    @Test
+    void requestsInFlightAndStaleResponsesDontRefillTheBucket() throws Exception {
+        WebhookSender.Bucket bucket = new WebhookSender.Bucket();
+        WebhookSender.Bucket.Permit probe = bucket.tryAcquire();
+        bucket.update(probe.window(), limits(5, 4, 0.1));
+
+        List<WebhookSender.Bucket.Permit> taken = new ArrayList<>();
+        for (int i = 0; i < 3; i++) taken.add(bucket.tryAcquire());
+        // Discord has only seen the first of the three: its 3 left are 1 once the other two land
+        bucket.update(taken.get(0).window(), limits(5, 3, 0.1));
+        assertEquals(Duration.ZERO, bucket.tryAcquire().delay());
+        assertNotEquals(Duration.ZERO, bucket.tryAcquire().delay());
+
+        Thread.sleep(150);
+        WebhookSender.Bucket.Permit fresh = bucket.tryAcquire();
+        assertEquals(Duration.ZERO, fresh.delay());
+        // A late answer from the last window doesn't overwrite what we know about this one
+        bucket.update(taken.get(1).window(), limits(5, 4, 0.1));
+        for (int i = 0; i < 4; i++) assertEquals(Duration.ZERO, bucket.tryAcquire().delay());
+        assertNotEquals(Duration.ZERO, bucket.tryAcquire().delay());
+    }
+}
@@ -0,0 +1,127 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A local client posting workflow events in place of YouTrack, against a stub Discord webhook
+class YouTrackWebhookControllerTest {
+    private static final ObjectMapper OM = new ObjectMapper();
+    private static final String SECRET = "s3cret";
+    private static final String EVENT = """
+            {"header":"Issue updated","issue":{"id":"DEMO-7","summary":"Push test"},
+             "change":{"author":{"login":"arhan"},"humanReadableTimeStamp":"18 Oct 2026 10:15","endTimestamp":1792318500000,
+               "events":[{"category":"COMMENT","name":"","addedValues":[{"name":"pushed"}]}]}}""";
+
+    @TempDir Path home;
+    private String oldHome;
+    private DisposableServer stub;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private NotificationPipeline pipeline;
+    private NotificationScheduler scheduler;
+    private WebTestClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        stub = HttpServer.create().port(0)
+                .route(r -> r.post("/hook", (req, res) -> req.receive().aggregate().asString(StandardCharsets.UTF_8).flatMap(body -> {
+                    try {
+                        for (JsonNode e : OM.readTree(body).path("embeds")) received.add(e.path("description").asText());
+                    } catch (Exception ignore) {}
+                    return res.status(204).send().then();
+                })))
+                .bindNow();
+
+        // The scheduler keeps its state files under user.home
+        oldHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.toString());
+        DiscordClient discord = new DiscordClient(WebClient.create(), "http://localhost:" + stub.port() + "/hook");
+        pipeline = new NotificationPipeline(new WebhookSender(discord, 3, Duration.ofMillis(10)),
+                "https://team.youtrack.cloud/api", 2, 5, new OutboundQueue(home.resolve("outbox"), 2, 1 << 20));
+        scheduler = new NotificationScheduler(new YouTrackService(WebClient.create()), pipeline,
+                50, 20, 1000, 30, 5, 300, 0.1, 60, true, 600, false, 0, 0, 0);
+        client = WebTestClient.bindToController(new YouTrackWebhookController(scheduler, SECRET)).build();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        scheduler.close();
+        pipeline.close();
+        stub.disposeNow();
+        System.setProperty("user.home", oldHome);
+    }
+
+    private WebTestClient.ResponseSpec post(String header, String value, String body) {
+        return client.post().uri("/hooks/youtrack")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(header, value)
+                .bodyValue(body.getBytes(StandardCharsets.UTF_8))
+                .exchange();
+    }
+
+    private static String sign(String body) {
+        return "sha256=" + HexFormat.of().formatHex(YouTrackWebhookController.hmac(
+                SECRET.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void awaitReceived(int n) throws InterruptedException {
+        for (int i = 0; i < 200 && received.size() < n; i++) Thread.sleep(10);
+    }
+
+    @Test
+    void rejectsBadSignaturesAndTokens() {
+        post(YouTrackWebhookController.SIGNATURE_HEADER, "sha256=00", EVENT).expectStatus().isUnauthorized();
+        post(YouTrackWebhookController.SIGNATURE_HEADER, "sha256=zz", EVENT).expectStatus().isUnauthorized();
+        post(YouTrackWebhookController.TOKEN_HEADER, "wrong", EVENT).expectStatus().isUnauthorized();
+        post(YouTrackWebhookController.TOKEN_HEADER, SECRET, "{\"issue\":{\"id\":\"DEMO-1\"}}").expectStatus().isBadRequest();
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void deliversSignedEventOnceEvenIfPushedTwice() throws Exception {
+        post(YouTrackWebhookController.SIGNATURE_HEADER, sign(EVENT), EVENT).expectStatus().isAccepted();
+        awaitReceived(1);
+        post(YouTrackWebhookController.TOKEN_HEADER, SECRET, EVENT).expectStatus().isAccepted();
+        Thread.sleep(200);
+
+        assertEquals(1, received.size());
+        assertTrue(received.get(0).startsWith("**DEMO-7** — Push test"), received.get(0));
+    }
+
+    @Test
+    void reconciliationPollSkipsPushedChange() throws Exception {
+        post(YouTrackWebhookController.TOKEN_HEADER, SECRET, EVENT).expectStatus().isAccepted();
+        awaitReceived(1);
+
+        // The same change as a polled notification, with the time formatted for another locale,
+        // plus one that never came through push
+        String same = EVENT.replace("18 Oct 2026 10:15", "18.10.2026, 10:15");
+        String missed = EVENT.replace("pushed", "missed").replace("1792318500000", "1792318560000");
+        List<Notification> polled = new ArrayList<>(List.of(
+                new Notification("2-1", 1000, 0, NotificationPipelineTest.b64gzip(same), null),
+                new Notification("2-2", 1001, 0, NotificationPipelineTest.b64gzip(missed), null)));
+        assertEquals(2, scheduler.process(polled).block(Duration.ofSeconds(10)));
+        awaitReceived(2);
+
+        assertEquals(2, received.size());
+        assertTrue(received.get(1).contains("**Comment:** missed"), received.get(1));
+    }
+}
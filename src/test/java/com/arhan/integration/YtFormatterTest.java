@@ -0,0 +1,40 @@
+package com.arhan.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Golden files in src/test/resources/golden were produced by LegacyYtFormatter (the original
+// implementation); the compiled renderer has to reproduce them byte for byte
+class YtFormatterTest {
+    private static final String BASE = "https://team.youtrack.cloud";
+
+    @ParameterizedTest
+    @ValueSource(strings = {"small", "mixed-comments", "comment-heavy", "saved-searches", "saved-search-heavy",
+            "two-searches", "blank-reasons", "edge-cases"})
+    void matchesGoldenMarkdown(String sample) throws Exception {
+        String json = resource(sample + ".json");
+        assertEquals(resource(sample + ".md"), YtFormatter.fromMetadata(json, BASE));
+        assertEquals(LegacyYtFormatter.fromMetadata(json, BASE + "/", "Arhan"),
+                YtFormatter.fromMetadata(json, BASE + "/", "Arhan"));
+    }
+
+    @Test
+    void metadataWithoutEventsFallsBackLikeBefore() {
+        String json = "{\"header\":\"Issue created\",\"issue\":{\"id\":\"DEMO-5\"}}";
+        assertThrows(Exception.class, () -> LegacyYtFormatter.fromMetadata(json, BASE));
+        assertThrows(Exception.class, () -> YtFormatter.fromMetadata(json, BASE));
+        assertThrows(Exception.class, () -> YtFormatter.fromMetadata("", BASE));
+    }
+
+    static String resource(String name) throws Exception {
+        try (InputStream in = YtFormatterTest.class.getResourceAsStream("/golden/" + name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.arhan.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// execution.mode=virtual: same delivery guarantees as the reactive mode, with the poll and send
+// loops as sequential blocking code on virtual threads
+class VirtualThreadExecutionTest {
+    private static final ObjectMapper OM = new ObjectMapper();
+    private static final Pattern LINE = Pattern.compile("\\*\\*(DEMO-\\d+)\\*\\*.*\\*\\*Comment:\\*\\* seq (\\d+)", Pattern.DOTALL);
+
+    // The sequential loops never go through WebClient
+    private static final WebClient NO_WEBCLIENT = WebClient.builder()
+            .filter((req, next) -> Mono.error(new AssertionError("WebClient used for " + req.url()))).build();
+
+    @TempDir Path dir;
+    private final VirtualThreadExecution execution = new VirtualThreadExecution();
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private DisposableServer stub;
+
+    @AfterEach
+    void stop() {
+        if (stub != null) stub.disposeNow();
+        execution.close();
+    }
+
+    @Test
+    void deliversEverythingOnceAndKeepsOrderPerIssue() throws Exception {
+        stub = HttpServer.create().port(0)
+                .route(r -> r.post("/hook", (req, res) -> req.receive().aggregate().asString(StandardCharsets.UTF_8).flatMap(body -> {
+                    try {
+                        for (JsonNode e : OM.readTree(body).path("embeds")) received.add(e.path("description").asText());
+                    } catch (Exception ignore) {}
+                    return res.status(204).send().then();
+                })))
+                .bindNow();
+        DiscordClient discord = new DiscordClient(NO_WEBCLIENT, BlockingHttp.defaults(), "http://localhost:" + stub.port() + "/hook");
+        NotificationPipeline pipeline = new NotificationPipeline(new WebhookSender(discord, 3, Duration.ofMillis(10)),
+                "https://team.youtrack.cloud/api", 4, 20, new OutboundQueue(dir, 4, 1 << 20), execution);
+        try {
+            pipeline.enqueue(pipeline.render(NotificationPipelineTest.backlog(500, 17)).collectList().block(Duration.ofSeconds(30)));
+            long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            while (pipeline.pending() > 0 && System.nanoTime() < deadline) Thread.sleep(5);
+        } finally {
+            pipeline.close();
+        }
+
+        assertEquals(500, received.size());
+        Map<String, Integer> last = new HashMap<>();
+        for (String md : received) {
+            Matcher m = LINE.matcher(md);
+            assertTrue(m.find(), md);
+            int seq = Integer.parseInt(m.group(2));
+            Integer prev = last.put(m.group(1), seq);
+            assertTrue(prev == null || prev < seq, m.group(1) + " went " + prev + " -> " + seq);
+        }
+    }
+
+    @Test
+    void loopRunsOnOneVirtualThreadUntilDisposed() throws Exception {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger rounds = new AtomicInteger();
+        Disposable loop = execution.loop("test-loop", () -> Mono.fromRunnable(() -> {
+            threads.add(Thread.currentThread());
+            rounds.incrementAndGet();
+        }).then(Mono.delay(Duration.ofMillis(5))).then());
+        Thread.sleep(100);
+        loop.dispose();
+        Thread.sleep(50);
+        int after = rounds.get();
+        Thread.sleep(50);
+
+        assertTrue(after > 1);
+        assertEquals(after, rounds.get());
+        assertEquals(1, threads.size());
+        assertTrue(threads.iterator().next().isVirtual());
+    }
+
+    @Test
+    void pollsAndDeliversWithBlockingHttp() throws Exception {
+        List<String> page = new ArrayList<>();
+        for (Notification n : NotificationPipelineTest.backlog(30, 5)) {
+            page.add(0, "{\"id\":\"" + n.id() + "\",\"updated\":" + n.timestamp()
+                    + ",\"metadata\":\"" + new String(n.metadata(), StandardCharsets.ISO_8859_1) + "\"}");
+        }
+        DisposableServer youtrack = HttpServer.create().port(0)
+                .route(r -> r.get("/api/users/notifications", (req, res) -> res.header("Content-Type", "application/json")
+                        .sendString(Mono.just(req.uri().contains("$skip=0") ? "[" + String.join(",", page) + "]" : "[]")).then()))
+                .bindNow();
+        stub = HttpServer.create().port(0)
+                .route(r -> r.post("/hook", (req, res) -> req.receive().aggregate().asString(StandardCharsets.UTF_8).flatMap(body -> {
+                    try {
+                        for (JsonNode e : OM.readTree(body).path("embeds")) received.add(e.path("description").asText());
+                    } catch (Exception ignore) {}
+                    return res.status(204).send().then();
+                })))
+                .bindNow();
+        Files.writeString(dir.resolve(".yt_watermark.txt"), "1 2-start");
+        DiscordClient discord = new DiscordClient(NO_WEBCLIENT, BlockingHttp.defaults(), "http://localhost:" + stub.port() + "/hook");
+        NotificationPipeline pipeline = new NotificationPipeline(new WebhookSender(discord, 3, Duration.ofMillis(10)),
+                "https://team.youtrack.cloud/api", 4, 5, new OutboundQueue(dir.resolve("outbox"), 2, 1 << 20), execution);
+        BlockingHttp http = BlockingHttp.create(new Config.HttpSettings(5000, 30, 30, 50, 10000, 30, 300, 30, 1 << 20, false),
+                execution.executor());
+        NotificationScheduler scheduler = new NotificationScheduler(new YouTrackService(NO_WEBCLIENT,
+                Config.youtrack(http, "http://localhost:" + youtrack.port() + "/api", "test")),
+                pipeline, new NotificationScheduler.Settings(10, 20, 10_000, 1, 1, 1, 0, 10, false, 600,
+                        false, 0, 0, 0, dir, false));
+        try {
+            scheduler.start();
+            long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+            while (received.size() < 30 && System.nanoTime() < deadline) Thread.sleep(10);
+            Thread.sleep(1500); // another poll
+        } finally {
+            scheduler.close();
+            pipeline.close();
+            youtrack.disposeNow();
+        }
+
+        assertEquals(30, received.size());
+        assertEquals(30, new HashSet<>(received).size());
+    }
+
+    // Stopping lets the round finish what it is writing instead of interrupting it: an interrupt
+    // would close the file channel it has open
+    @Test
+    void aSequentialLoopStopsWithoutInterruptingItsThread() throws Exception {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger rounds = new AtomicInteger();
+        AtomicInteger writtenAfterStop = new AtomicInteger();
+        try (FileChannel file = FileChannel.open(dir.resolve("state"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            Disposable loop = execution.loop("test-loop", () -> Mono.error(new AssertionError("reactive round")), pause -> {
+                threads.add(Thread.currentThread());
+                if (rounds.incrementAndGet() < 3) {
+                    pause.sleep(Duration.ofMillis(5));
+                    return;
+                }
+                // Still writing when the loop is stopped
+                while (!pause.stopped()) file.write(ByteBuffer.wrap(new byte[]{1}));
+                for (int i = 0; i < 100; i++) {
+                    file.write(ByteBuffer.wrap(new byte[]{2}));
+                    writtenAfterStop.incrementAndGet();
+                }
+                pause.sleep(Duration.ofHours(1));
+            });
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (rounds.get() < 3 && System.nanoTime() < deadline) Thread.sleep(5);
+            Thread.sleep(20);
+            loop.dispose();
+
+            assertEquals(3, rounds.get());
+            assertEquals(100, writtenAfterStop.get());
+            assertTrue(file.isOpen());
+        }
+        assertEquals(1, threads.size());
+        Thread thread = threads.iterator().next();
+        assertTrue(thread.isVirtual());
+        assertFalse(thread.isAlive());
+    }
+}